@@ -0,0 +1,57 @@
+package me.asu.cli.command.cnsort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import me.asu.cli.command.util.BenchmarkInputs;
+import me.asu.cli.command.util.ColumnExtractor;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * cn-sort 查排序号：整词查找和按列查找。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearcherBenchmark {
+
+    private static final int N = 1 << 12;
+
+    @Param({Orders.SIMPLIFIED, Orders.TRADITIONAL, Orders.PHRASES})
+    String table;
+
+    private ChineseSearcher searcher;
+    private String[]        words;
+    private String[]        lines;
+    private ColumnExtractor extractor;
+    private int             i;
+
+    @Setup
+    public void setup() {
+        searcher = Orders.getSearcher(table);
+        List<String> source = Orders.PHRASES.equals(table)
+                ? BenchmarkInputs.phrases()
+                : BenchmarkInputs.characters();
+        words = BenchmarkInputs.sample(source, N).toArray(new String[0]);
+        lines = BenchmarkInputs.columnLines(3, "\t", N).toArray(new String[0]);
+        extractor = ColumnExtractor.of("\t", 0);
+    }
+
+    @Benchmark
+    public int searchOrder() {
+        return searcher.searchOrder(words[i++ & (N - 1)]);
+    }
+
+    @Benchmark
+    public int searchOrderByColumn() {
+        return searcher.searchOrderByColumn(lines[i++ & (N - 1)], extractor);
+    }
+
+    /** 每次调用都按分隔符重新取列，对比预先编译的提取器。 */
+    @Benchmark
+    public int searchOrderByColumnSplitter() {
+        return searcher.searchOrderByColumn(lines[i++ & (N - 1)], 0, "\t");
+    }
+}
@@ -0,0 +1,66 @@
+package me.asu.cli.command.code;
+
+import java.util.concurrent.TimeUnit;
+import me.asu.cli.command.util.BenchmarkInputs;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * code 命令给词组编码，分别测短词组和长词组。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CodeLatticeBenchmark {
+
+    private static final int N = 1 << 10;
+
+    @Param({"he.txt", "wubi.txt"})
+    String table;
+
+    @Param({"2", "4", "8"})
+    int length;
+
+    private CodeLattice lattice;
+    private CodeLattice ranked;
+    private String[]    phrases;
+    private int         i;
+
+    @Setup
+    public void setup() {
+        CodeTrie trie = CodeCmd.loadTrie(table, null);
+        lattice = new CodeLattice(trie);
+        ranked = new CodeLattice(trie).setRanked(true);
+        phrases = BenchmarkInputs.phrases(length, N).toArray(new String[0]);
+    }
+
+    /** 全部编码，长词组组合数很多，最多取 1000 个。 */
+    @Benchmark
+    public int all() {
+        return drain(lattice.reset(next(), false, 1000));
+    }
+
+    @Benchmark
+    public int shortest() {
+        return drain(lattice.reset(next(), true, 0));
+    }
+
+    @Benchmark
+    public int rankedTop10() {
+        return drain(ranked.reset(next(), false, 10));
+    }
+
+    private String next() {
+        return phrases[i++ & (N - 1)];
+    }
+
+    private static int drain(CodeLattice l) {
+        int n = 0;
+        while (l.next()) {
+            n += l.getWordCount();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,50 @@
+package me.asu.cli.command.line_filter;
+
+import java.util.concurrent.TimeUnit;
+import me.asu.cli.command.util.BenchmarkInputs;
+import me.asu.cli.command.util.ColumnExtractor;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * line-filter 取比对列。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PickUpWordBenchmark {
+
+    private static final int N = 1 << 12;
+
+    /** \t 按单个字符查找，\s+ 直接扫描空白，其余的分隔符如 [,;] 走正则。 */
+    @Param({"\t", "\\s+", "[,;]"})
+    String splitter;
+
+    @Param({"0", "2"})
+    int column;
+
+    private LineFilterCmd   cmd;
+    private ColumnExtractor extractor;
+    private String[]        lines;
+    private int             i;
+
+    @Setup
+    public void setup() {
+        cmd = new LineFilterCmd();
+        extractor = ColumnExtractor.of(splitter, column);
+        String separator = "[,;]".equals(splitter) ? "," : "\t";
+        lines = BenchmarkInputs.columnLines(4, separator, N).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public String pickUpWord() {
+        return cmd.pickUpWord(lines[i++ & (N - 1)], column, splitter);
+    }
+
+    @Benchmark
+    public CharSequence extract() {
+        return extractor.extract(lines[i++ & (N - 1)]);
+    }
+}
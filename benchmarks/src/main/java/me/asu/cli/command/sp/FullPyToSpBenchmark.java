@@ -0,0 +1,62 @@
+package me.asu.cli.command.sp;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import me.asu.cli.command.util.BenchmarkInputs;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * full2sp-he 把全拼音节查成双拼：散列表和字典树查音节，以及整行转换。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FullPyToSpBenchmark {
+
+    private static final int N = 1 << 12;
+
+    private Map<String, String> table;
+    private ShuangpinConverter  converter;
+    private String[]            syllables;
+    private String[]            lines;
+    private int                 i;
+
+    @Setup
+    public void setup() {
+        table = FullPyToSpCmd.makeTable();
+        converter = new ShuangpinConverter(ShuangpinTable.HE, System.lineSeparator());
+        syllables = BenchmarkInputs.sample(BenchmarkInputs.syllables(), N)
+                .toArray(new String[0]);
+        lines = new String[N];
+        List<String> words = BenchmarkInputs.phrases(4, N);
+        StringBuilder b = new StringBuilder();
+        for (int n = 0; n < N; n++) {
+            b.setLength(0);
+            b.append(words.get(n));
+            for (int k = 0; k < 4; k++) {
+                b.append(' ').append(syllables[(n * 4 + k) & (N - 1)]);
+            }
+            lines[n] = b.toString();
+        }
+    }
+
+    @Benchmark
+    public String lookup() {
+        return table.get(syllables[i++ & (N - 1)]);
+    }
+
+    @Benchmark
+    public char[] trieLookup() {
+        String s = syllables[i++ & (N - 1)];
+        return ShuangpinTable.HE.lookup(s, 0, s.length());
+    }
+
+    @Benchmark
+    public int convertLine() {
+        return converter.convert(lines[i++ & (N - 1)]) ? converter.length() : -1;
+    }
+}
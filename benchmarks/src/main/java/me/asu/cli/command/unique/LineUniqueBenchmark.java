@@ -0,0 +1,73 @@
+package me.asu.cli.command.unique;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import me.asu.cli.command.util.BenchmarkInputs;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * line-unique 对一个文件去重，各种去重方式分别测。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class LineUniqueBenchmark {
+
+    private static final long MEMORY_BUDGET = 256L << 20;
+
+    @Param({"1000000"})
+    int lines;
+
+    /** 不同的行占的比例（%）。 */
+    @Param({"10", "90"})
+    int distinct;
+
+    private LineUniqueCmd cmd;
+    private Path          input;
+    private Path          output;
+    private String        lineSeparator;
+
+    @Setup
+    public void setup() throws IOException {
+        cmd = new LineUniqueCmd();
+        input = BenchmarkInputs.writeDuplicatedLines(lines, lines / 100 * distinct);
+        output = Files.createTempFile("bench-", ".out");
+        output.toFile().deleteOnExit();
+        lineSeparator = System.lineSeparator();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void process() throws IOException {
+        cmd.process(input, output);
+    }
+
+    @Benchmark
+    public long fingerprint() throws IOException {
+        FingerprintDeduper deduper = new FingerprintDeduper(MEMORY_BUDGET, false);
+        deduper.dedup(input, output, lineSeparator);
+        return deduper.getCollisions();
+    }
+
+    @Benchmark
+    public long fingerprintVerified() throws IOException {
+        FingerprintDeduper deduper = new FingerprintDeduper(MEMORY_BUDGET, true);
+        deduper.dedup(input, output, lineSeparator);
+        return deduper.getCollisions();
+    }
+
+    @Benchmark
+    public boolean mapped() throws IOException {
+        return new MappedDeduper(MEMORY_BUDGET).dedup(input, output);
+    }
+}
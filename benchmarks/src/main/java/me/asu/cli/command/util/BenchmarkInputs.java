@@ -0,0 +1,117 @@
+package me.asu.cli.command.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试的输入，从内置字典生成。随机数种子固定，每次运行的输入相同。
+ */
+public final class BenchmarkInputs {
+
+    public static final long SEED = 20190604L;
+
+    private BenchmarkInputs() {
+    }
+
+    public static Random random() {
+        return new Random(SEED);
+    }
+
+    /** 从列表里随机取 n 项，可以重复。 */
+    public static List<String> sample(List<String> source, int n) {
+        Random random = random();
+        List<String> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(source.get(random.nextInt(source.size())));
+        }
+        return result;
+    }
+
+    /** 简体字序表里的单字。 */
+    public static List<String> characters() {
+        return firstColumn(ResourcesFiles.orders());
+    }
+
+    /** 词组序表里的词组。 */
+    public static List<String> phrases() {
+        return firstColumn(ResourcesFiles.ordersPhrases());
+    }
+
+    private static List<String> firstColumn(List<String> lines) {
+        List<String> result = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            result.add(line.split("\\s+", 2)[0]);
+        }
+        return result;
+    }
+
+    /** 由 n 个随机单字拼成的词组，长度固定。 */
+    public static List<String> phrases(int length, int n) {
+        List<String> chars = characters();
+        Random random = random();
+        List<String> result = new ArrayList<>(n);
+        StringBuilder b = new StringBuilder(length);
+        for (int i = 0; i < n; i++) {
+            b.setLength(0);
+            while (b.length() < length) {
+                b.append(chars.get(random.nextInt(chars.size())));
+            }
+            b.setLength(length);
+            result.add(b.toString());
+        }
+        return result;
+    }
+
+    /** 多列的行：第 0 列是词组，其余是数字，用 splitter 分隔。 */
+    public static List<String> columnLines(int columns, String splitter, int n) {
+        List<String> words = sample(phrases(), n);
+        Random random = random();
+        List<String> result = new ArrayList<>(n);
+        StringBuilder b = new StringBuilder();
+        for (String word : words) {
+            b.setLength(0);
+            b.append(word);
+            for (int i = 1; i < columns; i++) {
+                b.append(splitter).append(random.nextInt(100000));
+            }
+            result.add(b.toString());
+        }
+        return result;
+    }
+
+    /** 全拼表里的拼音，如 "zhong"。 */
+    public static List<String> syllables() {
+        Map<String, List<String>> map = ResourcesFiles.loadAsMapList("gbkpy.txt");
+        List<String> result = new ArrayList<>();
+        for (List<String> codes : map.values()) {
+            result.addAll(codes);
+        }
+        return result;
+    }
+
+    /** 写出 n 行，其中约 distinct 个不同的词组，用于去重。 */
+    public static Path writeDuplicatedLines(int n, int distinct) throws IOException {
+        List<String> pool = sample(phrases(), distinct);
+        Random random = random();
+        Path file = Files.createTempFile("bench-", ".txt");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < n; i++) {
+                writer.write(pool.get(random.nextInt(pool.size())));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+}
@@ -1,26 +1,30 @@
 package me.asu.cli.command.cnsort;
 
+import me.asu.cli.command.util.ColumnExtractor;
 import me.asu.util.Strings;
 
 public interface ChineseSearcher {
         int searchOrder(String w);
+
+        default int searchOrder(CharSequence w) {
+            return searchOrder(w.toString());
+        }
+
         default int searchOrderByColumn(String w, int columnIndx) {
             return searchOrderByColumn(w, columnIndx, "\\s+");
         }
 
         default int searchOrderByColumn(String w, int columnIndex, String splitter) {
+            return searchOrderByColumn(w, ColumnExtractor.of(splitter, columnIndex));
+        }
+
+        /**
+         * 用预先编译的列提取器取列，适合逐行调用。
+         */
+        default int searchOrderByColumn(String w, ColumnExtractor extractor) {
             if (Strings.isBlank(w)) {
                 return Integer.MAX_VALUE;
             }
-            if (Strings.isBlank(splitter)) {
-                return searchOrder(w);
-            }
-            splitter = splitter.trim();
-            w = w.trim();
-            String[] split = w.split(splitter);
-            if (columnIndex >= split.length) {
-                columnIndex = split.length - 1;
-            }
-            return searchOrder(split[columnIndex]);
+            return searchOrder(extractor.extract(w));
         }
     }
\ No newline at end of file
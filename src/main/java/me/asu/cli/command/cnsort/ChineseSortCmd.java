@@ -15,20 +15,25 @@
  */
 package me.asu.cli.command.cnsort;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Comparator;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
-import lombok.Data;
+import me.asu.cli.command.pipeline.LineStage;
+import me.asu.cli.command.util.ColumnExtractor;
+import me.asu.cli.command.util.CommandOptions;
+import me.asu.cli.command.util.DictionaryRegistry;
+import me.asu.cli.command.util.LineConsumer;
+import me.asu.cli.command.util.OutputSink;
+import me.asu.cli.command.util.RunStats;
 import me.asu.tui.framework.api.CliCommand;
 import me.asu.tui.framework.api.CliConfigurator;
 import me.asu.tui.framework.api.CliConsole;
@@ -76,59 +81,124 @@ public class ChineseSortCmd implements CliCommand
             return null;
         }
 
-        ChineseSearcher chineseSearcher = getChineseSearcher(arguments);
-        Path outputPath = getOutputPath(arguments);
-        Path inputPath = Paths.get(arguments.getRemain().get(0));
-        String delimiter = arguments.getParam("d");
-        Charset encoding = getEncoding(arguments);
-        int column = getColumn(arguments);
-
-        c.printf("处理文件： %s%n", inputPath);
-        c.printf("字符编码： %s%n", encoding);
-        c.printf("行分隔符： %s%n", delimiter);
-        c.printf("行： %d%n", column);
-
-        c.printf("%n");
-        c.flush();
-
-        PriorityQueue<Word> words = new PriorityQueue<Word>(
-                Comparator.comparingInt(Word::getScore));
-        AtomicInteger count = new AtomicInteger();
-        try (Stream<String> lines = Files.lines(inputPath, encoding);) {
-            lines.forEach(line -> {
-                Word w = new Word();
-                w.setLine(line);
-                int order = chineseSearcher.searchOrderByColumn(line, column, delimiter);
-                w.setScore(order);
-                words.add(w);
-                int i = count.incrementAndGet();
-                if (i % 10000 == 0) {
-                    c.printf("processing %d lines.%n", i);
+        try (RunStats stats = RunStats.start(CMD_NAME, arguments)) {
+            ChineseSearcher chineseSearcher;
+            try (RunStats.Phase p = stats.phase(RunStats.PHASE_LOAD)) {
+                chineseSearcher = getChineseSearcher(arguments);
+            }
+            Path outputPath = getOutputPath(arguments);
+            Path inputPath = Paths.get(arguments.getRemain().get(0));
+            String delimiter = arguments.getParam("d");
+            Charset encoding = getEncoding(arguments);
+            int column = getColumn(arguments);
+            int threads = CommandOptions.getThreads(arguments);
+
+            c.printf("处理文件： %s%n", inputPath);
+            c.printf("字符编码： %s%n", encoding);
+            c.printf("行分隔符： %s%n", delimiter);
+            c.printf("行： %d%n", column);
+            c.printf("线程数： %d%n", threads);
+
+            c.printf("%n");
+            c.flush();
+
+            long memoryBudget = CommandOptions.getMemoryBudget(arguments);
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+            AtomicInteger count = new AtomicInteger();
+            ColumnExtractor extractor = ColumnExtractor.of(delimiter, column);
+            try (ExternalSorter sorter = new ExternalSorter(
+                    line -> chineseSearcher.searchOrderByColumn(line, extractor),
+                    pool, memoryBudget, null)) {
+                try (Stream<String> lines = Files.lines(inputPath, encoding);
+                     RunStats.Phase p = stats.phase(RunStats.PHASE_PROCESS)) {
+                    lines.forEach(line -> {
+                        add(sorter, line);
+                        int i = count.incrementAndGet();
+                        if (i % 10000 == 0) {
+                            c.printf("processing %d lines.%n", i);
+                        }
+                    });
                 }
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+                c.printf("处理了%d个字词。%n", sorter.size());
+                if (sorter.getRunCount() > 0) {
+                    c.printf("超出内存预算，使用了%d个临时分段。%n", sorter.getRunCount());
+                }
+                c.printf("保存文件到：%s%n", outputPath);
+                c.flush();
+                try (OutputSink sink = new OutputSink(outputPath, StandardCharsets.UTF_8);
+                     RunStats.Phase p = stats.phase(RunStats.PHASE_WRITE)) {
+                    sorter.writeTo(sink, OutputSink.LINE_SEPARATOR);
+                }
+                stats.addLines(count.get());
+                stats.addBytesRead(inputPath);
+                stats.addBytesWritten(outputPath);
+            } catch (IOException | UncheckedIOException e) {
+                e.printStackTrace();
+            } finally {
+                if (pool != null) {
+                    pool.shutdown();
+                }
+            }
+            stats.report(c);
+            return null;
         }
-        c.printf("处理了%d个字词。%n", words.size());
-        c.printf("保存文件到：%s%n", outputPath);
-        c.flush();
-        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(outputPath)) {
-            words.forEach(w -> write(bufferedWriter, w));
-            bufferedWriter.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
+    }
+
+    /**
+     * 流水线中的阶段。收下全部输入后在结束时按序输出，-o 和 -e 由流水线决定。
+     */
+    public LineStage newStage(CliConsole c, String[] args)
+    {
+        CliArguments arguments;
+        try {
+            arguments = args.length == 0 ? new CliArguments() : DESCRIPTOR.parse(args);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(CMD_NAME + " 参数错误：" + String.join(" ", args), e);
         }
-        return null;
+        ChineseSearcher chineseSearcher = getChineseSearcher(arguments);
+        ColumnExtractor extractor = ColumnExtractor.of(arguments.getParam("d"), getColumn(arguments));
+        int threads = CommandOptions.getThreads(arguments);
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        ExternalSorter sorter = new ExternalSorter(
+                line -> chineseSearcher.searchOrderByColumn(line, extractor),
+                pool, CommandOptions.getMemoryBudget(arguments), null);
+        return new LineStage()
+        {
+            @Override
+            public void accept(String line, LineConsumer out) throws IOException
+            {
+                sorter.add(line);
+            }
+
+            @Override
+            public void finish(LineConsumer out) throws IOException
+            {
+                if (sorter.getRunCount() > 0) {
+                    c.printf("%s：超出内存预算，使用了%d个临时分段。%n", CMD_NAME, sorter.getRunCount());
+                }
+                sorter.forEach(out);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                try {
+                    sorter.close();
+                } finally {
+                    if (pool != null) {
+                        pool.shutdown();
+                    }
+                }
+            }
+        };
     }
 
-    private void write(BufferedWriter bufferedWriter, Word w)
+    private void add(ExternalSorter sorter, String line)
     {
         try {
-            bufferedWriter.write(w.getLine());
-            bufferedWriter.write(System.getProperty("line.separator"));
+            sorter.add(line);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -176,7 +246,7 @@ public class ChineseSortCmd implements CliCommand
     private ChineseSearcher getChineseSearcher(CliArguments arguments)
     {
         ChineseSearcher chineseSearcher;
-        String type = null;
+        String type = TYPE_SIMPLIFIED;
         if (arguments.hasParam("p")) {
             type = TYPE_PHRASE;
         } else if (arguments.hasParam("s")) {
@@ -211,21 +281,15 @@ public class ChineseSortCmd implements CliCommand
     public void plug(CliContext plug)
     {
         //descriptor = new DescriptorImpl();
-
+        DictionaryRegistry registry = DictionaryRegistry.getInstance();
+        registry.retain(Orders.NAMESPACE);
+        registry.preload(Orders.NAMESPACE, Orders.TABLES, Orders::getSearcher);
     }
 
     @Override
     public void unplug(CliContext plug)
     {
-        // nothing to do
-    }
-
-    @Data
-    private class Word
-    {
-
-        String line;
-        int    score;
+        DictionaryRegistry.getInstance().release(Orders.NAMESPACE);
     }
 
     static class InnerDescriptor implements CliCommand.Descriptor
@@ -244,8 +308,11 @@ public class ChineseSortCmd implements CliCommand
             CliCmdLineOption opt7 = CliCmdLineOption.builder().shortName("p").description("等同 -type p。").build();
             CliCmdLineOption opt8 = CliCmdLineOption.builder().shortName("s").description("等同 -type s。").build();
             CliCmdLineOption opt9 = CliCmdLineOption.builder().shortName("t").description("等同 -type t。").build();
+            CliCmdLineOption opt10 = CliCmdLineOption.builder().shortName("m").longName("memory").hasArg(true).description("内存预算（MB），超出后写临时分段做外部归并排序，默认为最大堆的 1/4。").build();
+            CliCmdLineOption opt11 = CliCmdLineOption.builder().shortName("j").longName("jobs").hasArg(true).description("并行打分和排序的线程数，默认为 1。").build();
 
-            parser.addOption(opt1, opt2, opt3, opt4, opt5, opt6, opt7, opt8, opt9);
+            parser.addOption(opt1, opt2, opt3, opt4, opt5, opt6, opt7, opt8, opt9, opt10, opt11,
+                    RunStats.option());
         }
         @Override
         public CliCmdLineParser getCliCmdLineParser()
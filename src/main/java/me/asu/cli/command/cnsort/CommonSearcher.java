@@ -1,15 +1,13 @@
 package me.asu.cli.command.cnsort;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import lombok.Data;
 
 @Data
 public class CommonSearcher implements ChineseSearcher {
 
         public List<String> orders;
-        public Map<String, Integer> orderMap;
+        public OrderIndex orderIndex;
 
         public CommonSearcher(List<String> list) {
             this.orders = list;
@@ -21,17 +19,18 @@ public class CommonSearcher implements ChineseSearcher {
 
         @Override
         public int searchOrder(String w) {
-            Integer integer = orderMap.get(w);
-            if (integer == null) {
-                return Integer.MAX_VALUE;
-            }
-            return integer;
+            return orderIndex.get(w);
+        }
+
+        @Override
+        public int searchOrder(CharSequence w) {
+            return orderIndex.get(w);
         }
 
         protected void init() {
-            orderMap = new HashMap<>();
+            orderIndex = new OrderIndex();
             for (int i = 0; i < orders.size(); i++) {
-                orderMap.put(orders.get(i), i);
+                orderIndex.put(orders.get(i), i);
             }
         }
     }
\ No newline at end of file
@@ -0,0 +1,243 @@
+package me.asu.cli.command.cnsort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import me.asu.cli.command.util.LineConsumer;
+
+/**
+ * 按分数排序文本行的外部归并排序。
+ * <p>
+ * 行先在内存中累积，超出内存预算后排序并写成临时分段，最后做 k 路归并输出。
+ * 分数相同的行保持输入顺序。
+ * <p>
+ * 打分推迟到分段排序时进行：指定 {@link ForkJoinPool} 时，整个分段在池内并行打分，
+ * 再用 fork-join 并行排序；分数和块内序号打包在一个 long 数组里，不为每行创建对象。
+ */
+public class ExternalSorter implements Closeable {
+
+    /** 每行除字符数据外的估算内存开销（String 对象、数组引用、排序 key）。 */
+    private static final int  LINE_OVERHEAD = 64;
+    private static final int  MAX_CHUNK     = Integer.MAX_VALUE - 8;
+    private static final int  BUFFER_SIZE   = 1 << 16;
+
+    private final ToIntFunction<String> scorer;
+    private final ForkJoinPool          pool;
+    private final long                  memoryBudget;
+    private final Path                  tempDir;
+    private final List<Path> runs = new ArrayList<>();
+
+    private String[] lines = new String[1024];
+    private long[]   keys  = new long[1024];
+    private int      size;
+    private long     usedBytes;
+    private long     total;
+
+    /**
+     * @param scorer       行的分数，越小越靠前；并行时会被多个线程同时调用
+     * @param pool         并行打分和排序使用的线程池，为 null 时在当前线程完成
+     * @param memoryBudget 内存预算（字节）
+     * @param tempDir      临时分段目录，为 null 时使用系统临时目录
+     */
+    public ExternalSorter(ToIntFunction<String> scorer, ForkJoinPool pool,
+                          long memoryBudget, Path tempDir) {
+        this.scorer = scorer;
+        this.pool = pool;
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+    }
+
+    public void add(String line) throws IOException {
+        if (size == lines.length) {
+            int n = (int) Math.min((long) size * 2, MAX_CHUNK);
+            lines = Arrays.copyOf(lines, n);
+            keys = Arrays.copyOf(keys, n);
+        }
+        lines[size] = line;
+        size++;
+        total++;
+        usedBytes += LINE_OVERHEAD + 2L * line.length();
+        if (usedBytes >= memoryBudget || size == MAX_CHUNK) {
+            spill();
+        }
+    }
+
+    /** 已加入的行数。 */
+    public long size() {
+        return total;
+    }
+
+    /** 已写出的临时分段数。 */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * 按分数顺序写出全部行。
+     */
+    public void writeTo(Appendable writer, String lineSeparator) throws IOException {
+        forEach(line -> {
+            writer.append(line);
+            writer.append(lineSeparator);
+        });
+    }
+
+    /**
+     * 按分数顺序把全部行交给 consumer，只能调用一次。
+     */
+    public void forEach(LineConsumer consumer) throws IOException {
+        if (runs.isEmpty()) {
+            sortChunk();
+            for (int i = 0; i < size; i++) {
+                consumer.accept(lines[(int) keys[i]]);
+            }
+            return;
+        }
+        if (size > 0) {
+            spill();
+        }
+        merge(consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        lines = new String[0];
+        keys = new long[0];
+        size = 0;
+    }
+
+    /** 高 32 位为分数，低 32 位为块内序号，long 的自然顺序即稳定的分数顺序。 */
+    private static long key(int score, int index) {
+        return ((long) score << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    private void sortChunk() throws IOException {
+        final int n = size;
+        if (pool == null) {
+            for (int i = 0; i < n; i++) {
+                keys[i] = key(scorer.applyAsInt(lines[i]), i);
+            }
+            Arrays.sort(keys, 0, n);
+            return;
+        }
+        // 在池内执行，parallel stream 与 parallelSort 的子任务都会 fork 到这个池。
+        final String[] ls = lines;
+        final long[] ks = keys;
+        try {
+            pool.submit(() -> {
+                IntStream.range(0, n).parallel()
+                         .forEach(i -> ks[i] = key(scorer.applyAsInt(ls[i]), i));
+                Arrays.parallelSort(ks, 0, n);
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void spill() throws IOException {
+        sortChunk();
+        Path run = tempDir == null
+                ? Files.createTempFile("cn-sort-", ".run")
+                : Files.createTempFile(tempDir, "cn-sort-", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+            for (int i = 0; i < size; i++) {
+                int index = (int) keys[i];
+                byte[] bytes = lines[index].getBytes(StandardCharsets.UTF_8);
+                out.writeInt((int) (keys[i] >> 32));
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                lines[index] = null;
+            }
+        }
+        size = 0;
+        usedBytes = 0;
+    }
+
+    private void merge(LineConsumer consumer) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(runs.size(),
+                Comparator.comparingInt((RunReader r) -> r.score)
+                          .thenComparingInt(r -> r.index));
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                consumer.accept(reader.line);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /** 顺序读取一个已排序的临时分段。 */
+    private static class RunReader implements Closeable {
+
+        final DataInputStream in;
+        final int             index;
+        int    score;
+        String line;
+        byte[] buf = new byte[256];
+
+        RunReader(Path path, int index) throws IOException {
+            this.in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+            this.index = index;
+        }
+
+        boolean next() throws IOException {
+            try {
+                score = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            int len = in.readInt();
+            if (len > buf.length) {
+                buf = new byte[Math.max(len, buf.length * 2)];
+            }
+            in.readFully(buf, 0, len);
+            line = new String(buf, 0, len, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
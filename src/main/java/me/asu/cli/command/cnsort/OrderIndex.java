@@ -0,0 +1,161 @@
+package me.asu.cli.command.cnsort;
+
+import java.util.Arrays;
+
+/**
+ * 字序索引。
+ * <p>
+ * 单字（一个码位）存放在按码位分页的 int 表里；词组存放在开放寻址表中，
+ * 键的字符连续打包在一个 char 数组里。查询时不分配对象，也不装箱。
+ */
+public class OrderIndex {
+
+    /** 未收录时的序号。 */
+    public static final int MISSING = Integer.MAX_VALUE;
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int[][] pages = new int[(Character.MAX_CODE_POINT >>> PAGE_BITS) + 1][];
+    private int singles;
+
+    private char[] chars   = new char[1024];
+    private int    charsUsed;
+    private int[]  offsets = new int[64];
+    private int[]  lengths = new int[64];
+    private int[]  values  = new int[64];
+    private int    entries;
+    /** 词条下标 + 1，0 表示空槽。 */
+    private int[]  slots   = new int[128];
+    private int    mask    = 127;
+
+    public void put(CharSequence key, int value) {
+        int cp = singleCodePoint(key);
+        if (cp >= 0) {
+            int[] page = pages[cp >>> PAGE_BITS];
+            if (page == null) {
+                page = new int[PAGE_SIZE];
+                Arrays.fill(page, MISSING);
+                pages[cp >>> PAGE_BITS] = page;
+            }
+            if (page[cp & PAGE_MASK] == MISSING) {
+                singles++;
+            }
+            page[cp & PAGE_MASK] = value;
+            return;
+        }
+        int slot = find(key);
+        if (slots[slot] != 0) {
+            values[slots[slot] - 1] = value;
+            return;
+        }
+        addEntry(key, value);
+        slots[slot] = entries;
+        if (entries * 2 > mask) {
+            rehash();
+        }
+    }
+
+    public int get(CharSequence key) {
+        int cp = singleCodePoint(key);
+        if (cp >= 0) {
+            int[] page = pages[cp >>> PAGE_BITS];
+            return page == null ? MISSING : page[cp & PAGE_MASK];
+        }
+        int entry = slots[find(key)];
+        return entry == 0 ? MISSING : values[entry - 1];
+    }
+
+    public int size() {
+        return singles + entries;
+    }
+
+    /** 键为单个码位时返回该码位，否则返回 -1。 */
+    private static int singleCodePoint(CharSequence key) {
+        int len = key.length();
+        if (len == 1) {
+            return key.charAt(0);
+        }
+        if (len == 2) {
+            char hi = key.charAt(0);
+            char lo = key.charAt(1);
+            if (Character.isHighSurrogate(hi) && Character.isLowSurrogate(lo)) {
+                return Character.toCodePoint(hi, lo);
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(CharSequence key) {
+        int h = 0;
+        for (int i = 0, n = key.length(); i < n; i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** 返回键所在的槽，或者应插入的空槽。 */
+    private int find(CharSequence key) {
+        int slot = hash(key) & mask;
+        while (slots[slot] != 0 && !matches(slots[slot] - 1, key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean matches(int entry, CharSequence key) {
+        int len = lengths[entry];
+        if (len != key.length()) {
+            return false;
+        }
+        int off = offsets[entry];
+        for (int i = 0; i < len; i++) {
+            if (chars[off + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addEntry(CharSequence key, int value) {
+        int len = key.length();
+        if (charsUsed + len > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsUsed + len));
+        }
+        for (int i = 0; i < len; i++) {
+            chars[charsUsed + i] = key.charAt(i);
+        }
+        if (entries == offsets.length) {
+            offsets = Arrays.copyOf(offsets, entries * 2);
+            lengths = Arrays.copyOf(lengths, entries * 2);
+            values = Arrays.copyOf(values, entries * 2);
+        }
+        offsets[entries] = charsUsed;
+        lengths[entries] = len;
+        values[entries] = value;
+        charsUsed += len;
+        entries++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int e = 0; e < entries; e++) {
+            int h = 0;
+            for (int i = offsets[e], end = i + lengths[e]; i < end; i++) {
+                h = 31 * h + chars[i];
+            }
+            int slot = mix(h) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = e + 1;
+        }
+    }
+}
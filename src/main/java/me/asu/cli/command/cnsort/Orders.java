@@ -1,16 +1,29 @@
 package me.asu.cli.command.cnsort;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import me.asu.cli.command.util.DictionaryRegistry;
 
 /**
  * Created by suk on 2019/6/4.
+ * <p>
+ * 排序表放在 {@link DictionaryRegistry} 里，各次命令共用，只加载一次。
  */
 public class Orders {
 
-    /** 词组 */
-    private static ChineseSearcher phrasesSearcher;
-    private static ChineseSearcher simplifiedChineseSearcher;
-    private static ChineseSearcher traditionalChineseSearcher;
+    public static final String NAMESPACE = "cn-sort";
+
+    public static final String SIMPLIFIED  = "simplified";
+    public static final String TRADITIONAL = "traditional";
+    public static final String PHRASES     = "phrases";
+
+    /** 全部排序表，预加载时使用。 */
+    public static final List<String> TABLES = Arrays.asList(SIMPLIFIED, TRADITIONAL, PHRASES);
+
+    /** 每个排序项大约占用的字节数，含字符串和索引。 */
+    private static final long BYTES_PER_ORDER = 96;
 
     // -------------------------------------------------
     
@@ -21,10 +34,7 @@ public class Orders {
     }
 
     public static ChineseSearcher getSimplifiedChineseSearcher() {
-        if (simplifiedChineseSearcher == null) {
-            simplifiedChineseSearcher = new SimplifiedChineseSearcher();
-        }
-        return simplifiedChineseSearcher;
+        return get(SIMPLIFIED, SimplifiedChineseSearcher::new);
     }
 
     // -------------------------------------------------
@@ -36,10 +46,7 @@ public class Orders {
     }
 
     public static ChineseSearcher getTraditionChineseSearcher() {
-        if (traditionalChineseSearcher == null) {
-            traditionalChineseSearcher = new TraditionalChineseSearcher();
-        }
-        return traditionalChineseSearcher;
+        return get(TRADITIONAL, TraditionalChineseSearcher::new);
     }
 
     // -------------------------------------------------
@@ -50,9 +57,27 @@ public class Orders {
     }
 
     public static ChineseSearcher getPhrasesSearcher() {
-        if (phrasesSearcher == null) {
-            phrasesSearcher = new PhrasesSearcher();
+        return get(PHRASES, PhrasesSearcher::new);
+    }
+
+    /**
+     * @param name {@link #SIMPLIFIED}、{@link #TRADITIONAL} 或 {@link #PHRASES}
+     */
+    public static ChineseSearcher getSearcher(String name) {
+        switch (name) {
+        case PHRASES:
+            return getPhrasesSearcher();
+        case TRADITIONAL:
+            return getTraditionChineseSearcher();
+        case SIMPLIFIED:
+            return getSimplifiedChineseSearcher();
+        default:
+            throw new IllegalArgumentException("未知的排序表：" + name);
         }
-        return phrasesSearcher;
+    }
+
+    private static ChineseSearcher get(String name, Callable<CommonSearcher> loader) {
+        return DictionaryRegistry.getInstance().get(NAMESPACE, name, loader,
+                s -> s.getOrders() == null ? 0 : s.getOrders().size() * BYTES_PER_ORDER);
     }
 }
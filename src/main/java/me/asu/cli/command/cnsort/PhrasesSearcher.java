@@ -1,6 +1,5 @@
 package me.asu.cli.command.cnsort;
 
-import java.util.HashMap;
 import lombok.Data;
 import me.asu.cli.command.util.ResourcesFiles;
 
@@ -12,14 +11,14 @@ public class PhrasesSearcher extends CommonSearcher {
         }
 
         protected void init() {
-            orderMap = new HashMap<>();
+            orderIndex = new OrderIndex();
             for (int i = 0; i < orders.size(); i++) {
                 String s = orders.get(i);
                 String[] split = s.split("\t");
                 if (split.length > 1) {
-                    orderMap.put(split[0], Integer.valueOf(split[1]));
+                    orderIndex.put(split[0], Integer.parseInt(split[1]));
                 } else {
-                    orderMap.put(split[0], i * 10);
+                    orderIndex.put(split[0], i * 10);
                 }
             }
         }
@@ -9,10 +9,6 @@ public class SimplifiedChineseSearcher extends CommonSearcher {
         }
         @Override
         public int searchOrder(String w) {
-            Integer integer = orderMap.get(w);
-            if (integer == null) {
-                return Integer.MAX_VALUE;
-            }
-            return integer;
+            return orderIndex.get(w);
         }
     }
\ No newline at end of file
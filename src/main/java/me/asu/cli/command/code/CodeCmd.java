@@ -15,7 +15,8 @@
  */
 package me.asu.cli.command.code;
 
-import java.io.BufferedWriter;
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -23,9 +24,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 import lombok.Data;
+import me.asu.cli.command.util.CommandOptions;
+import me.asu.cli.command.util.DictionaryRegistry;
+import me.asu.cli.command.util.OrderedExecutor;
+import me.asu.cli.command.util.OutputSink;
 import me.asu.cli.command.util.ResourcesFiles;
+import me.asu.cli.command.util.RunStats;
 import me.asu.tui.framework.api.*;
 import me.asu.tui.framework.util.CliArguments;
 import me.asu.tui.framework.util.CliCmdLineOption;
@@ -40,6 +48,14 @@ public class CodeCmd implements CliCommand {
     private static final String NAMESPACE = "asu";
     private static final String     CMD_NAME   = "code";
     private static final Descriptor DESCRIPTOR = new InnerDescriptor();
+    private static final int        BATCH_SIZE     = 1024;
+    /** 一批缓冲的输出字符数上限，多音字多的长词组编码数可能很多，超出后剩下的词组交给写出线程。 */
+    private static final int        BATCH_MAX_CHARS = 1 << 20;
+    /** 编码表在 {@link DictionaryRegistry} 里的命名空间。 */
+    static final         String     DICT_NAMESPACE = "code";
+    /** 内置编码表，预加载时使用。 */
+    static final List<String> BUILTIN_TABLES = Arrays.asList("gbkpy.txt", "he.txt",
+            "wubi.txt", "cj5-70000.txt", "sc.txt");
 
     @Override
     public Descriptor getDescriptor() {
@@ -51,120 +67,221 @@ public class CodeCmd implements CliCommand {
         CliConsole c = ctx.getCliConsole();
 
         CodeContext codeCtx = new CodeContext();
-        ArgumentsParser argumentsParser = new ArgumentsParser(args, c, codeCtx).invoke();
-        if (argumentsParser.isError()) {
-            return 1;
-        }
+        // 统计在解析参数后、加载编码表前开始，解析和加载出错时也要关闭
+        try {
+            ArgumentsParser argumentsParser = new ArgumentsParser(args, c, codeCtx).invoke();
+            if (argumentsParser.isError()) {
+                return 1;
+            }
 
-        processInput(codeCtx);
-        return 0;
+            RunStats runStats = codeCtx.getRunStats();
+            CodeStats stats;
+            // 编码和写出交错进行，写出的用时也在这个阶段里
+            try (RunStats.Phase p = runStats.phase(RunStats.PHASE_PROCESS)) {
+                stats = processInput(codeCtx);
+            }
+            stats.print(c);
+            runStats.addLines(stats.phrases);
+            runStats.addBytesRead(codeCtx.getInputPath());
+            runStats.addBytesWritten(codeCtx.getOutputPath());
+            runStats.report(c);
+            c.flush();
+            return 0;
+        } finally {
+            if (codeCtx.getRunStats() != null) {
+                codeCtx.getRunStats().close();
+            }
+        }
     }
 
-    private void processInput(CodeContext codeCtx) {
+    private CodeStats processInput(CodeContext codeCtx) {
+        if (codeCtx.getThreads() > 1) {
+            return processInputParallel(codeCtx);
+        }
+        CodeStats stats = new CodeStats();
         try (Stream<String> lines = Files.lines(codeCtx.getInputPath(), codeCtx.getEncoding());
-             BufferedWriter bufferedWriter = Files.newBufferedWriter(codeCtx.getOutputPath())
+             OutputSink sink = new OutputSink(codeCtx.getOutputPath(), StandardCharsets.UTF_8)
         ) {
+            CodeLattice lattice = newLattice(codeCtx);
             lines.forEach(line -> {
-                if(Strings.isBlank(line) || line.charAt(0) == '#') {
+                if (!isPhrase(line)) {
                     return;
                 }
                 codeCtx.setPhrase(line);
-                final List<String> words = new ArrayList<>();
-                final List<String> keys = new ArrayList<>();
-                g(words, keys, 0, codeCtx, bufferedWriter);
+                lattice.reset(line, codeCtx.isShortest(), codeCtx.getTopK());
+                write(sink, lattice);
+                stats.add(lattice);
             });
         } catch (IOException e) {
             e.printStackTrace();
         }
+        return stats;
     }
 
+    private static CodeLattice newLattice(CodeContext codeCtx) {
+        return new CodeLattice(codeCtx.getTrie())
+                .setRanked(codeCtx.isRanked())
+                .setTimeLimit(codeCtx.getTimeLimit());
+    }
 
     /**
-     * 递归处理
-     * @param keys
-     * @param words
-     * @param start
-     * @param codeContext
-     * @param bufferedWriter
+     * 按批把词组交给线程池编码，每个线程用自己的切分图写进各自的缓冲区，再按输入顺序写出。
+     * <p>
+     * 每批的缓冲区不超过 {@link #BATCH_MAX_CHARS}：超出时工作线程丢掉当前词组的输出并停下，
+     * 从这个词组起剩下的由写出线程像串行模式一样边编码边写出，内存占用与编码数无关。
      */
-    private void g(List<String> keys, List<String> words, int start,
-                   CodeContext codeContext, BufferedWriter bufferedWriter) {
-        if (start == codeContext.getPhrase().length()) {
-            write(bufferedWriter, keys, words);
-            return;
+    private CodeStats processInputParallel(CodeContext codeCtx) {
+        int threads = codeCtx.getThreads();
+        CodeStats stats = new CodeStats();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<CodeLattice> lattices = ThreadLocal.withInitial(() -> newLattice(codeCtx));
+        CodeLattice writerLattice = newLattice(codeCtx);
+        try (BufferedReader reader = Files.newBufferedReader(codeCtx.getInputPath(),
+                codeCtx.getEncoding());
+             OutputSink sink = new OutputSink(codeCtx.getOutputPath(), StandardCharsets.UTF_8)
+        ) {
+            OrderedExecutor<Batch> executor = new OrderedExecutor<>(pool, threads * 4, batch -> {
+                sink.append(batch.out);
+                stats.add(batch.stats);
+                for (int i = batch.done; i < batch.phrases.size(); i++) {
+                    writerLattice.reset(batch.phrases.get(i), codeCtx.isShortest(),
+                            codeCtx.getTopK());
+                    write(sink, writerLattice);
+                    stats.add(writerLattice);
+                }
+            });
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!isPhrase(line)) {
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(executor, lattices, batch, codeCtx);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(executor, lattices, batch, codeCtx);
+            }
+            executor.finish();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            pool.shutdownNow();
         }
+        return stats;
+    }
 
-        for(int i = start;
-                i <  Math.min(codeContext.getPhrase().length(), start + codeContext.getMaxWordLength());
-                i++) {
-            String w = codeContext.getPhrase().substring(start, i + 1);
-            if (codeContext.getWordMap().containsKey(w)) {
-                for (String k : codeContext.getWordMap().get(w)) {
-                    List<String> newKeys = new ArrayList<>(keys);
-                    List<String> newWords = new ArrayList<>(words);
-
-                    newKeys.add(k);
-                    newWords.add(w);
-                    g(newKeys, newWords, i + 1, codeContext, bufferedWriter);
+    private void submit(OrderedExecutor<Batch> executor,
+                        ThreadLocal<CodeLattice> lattices, List<String> batch,
+                        CodeContext codeCtx) throws IOException {
+        boolean shortest = codeCtx.isShortest();
+        int topK = codeCtx.getTopK();
+        executor.submit(() -> {
+            CodeLattice lattice = lattices.get();
+            Batch result = new Batch(batch, batch.size() * 32);
+            for (String phrase : batch) {
+                int start = result.out.length();
+                lattice.reset(phrase, shortest, topK);
+                while (lattice.next()) {
+                    lattice.appendTo(result.out);
+                    result.out.append(OutputSink.LINE_SEPARATOR);
+                    if (result.out.length() > BATCH_MAX_CHARS) {
+                        result.out.setLength(start);
+                        return result;
+                    }
                 }
+                result.stats.add(lattice);
+                result.done++;
             }
-        }
+            return result;
+        });
+    }
 
+    private static class Batch {
+        final List<String>  phrases;
+        final StringBuilder out;
+        final CodeStats     stats = new CodeStats();
+        /** 已编码写进 out 的词组数，其余的由写出线程编码。 */
+        int                 done;
+
+        Batch(List<String> phrases, int capacity) {
+            this.phrases = phrases;
+            out = new StringBuilder(capacity);
+        }
     }
 
+    private static boolean isPhrase(String line) {
+        return !Strings.isBlank(line) && line.charAt(0) != '#';
+    }
 
-    private void write(BufferedWriter bufferedWriter,List<String> keys, List<String> words) {
+    private void write(OutputSink sink, CodeLattice lattice) {
         try {
-            String text = String.format("%s\t%s%n", join(words, ""), join(keys, " "));
-            bufferedWriter.write(text);
+            while (lattice.next()) {
+                lattice.appendTo(sink);
+                sink.newLine();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private String join(Collection<String> coll, String delimiter) {
-        StringBuilder b = new StringBuilder();
-        for (String s : coll) {
-            b.append(s).append(delimiter);
-        }
-        if (b.length() > 0) {
-            b.setLength(b.length() - delimiter.length());
-        }
-        return b.toString();
-    }
-
 
     @Override
     public void plug(CliContext plug) {
         //descriptor = new DescriptorImpl();
-
+        DictionaryRegistry registry = DictionaryRegistry.getInstance();
+        registry.retain(DICT_NAMESPACE);
+        registry.preload(DICT_NAMESPACE, BUILTIN_TABLES, name -> loadTrie(name, null));
     }
 
     @Override
     public void unplug(CliContext plug) {
-        // nothing to do
+        DictionaryRegistry.getInstance().release(DICT_NAMESPACE);
+    }
+
+    /**
+     * 取编码表编译成的字典树，各次调用共用。外部文件按修改时间区分，改动后重新加载。
+     *
+     * @param encoding 为 null 时使用内置编码表的默认编码
+     */
+    static CodeTrie loadTrie(String name, String encoding) {
+        File file = ResourcesFiles.locate(name);
+        String key = name + "|" + encoding + "|" + (file == null ? 0 : file.lastModified());
+        return DictionaryRegistry.getInstance().get(DICT_NAMESPACE, key, () -> {
+            Map<String, List<String>> map = encoding == null
+                    ? ResourcesFiles.loadAsMapList(name)
+                    : ResourcesFiles.loadAsMapList(name, encoding);
+            return new CodeTrie(map == null ? Collections.emptyMap() : map);
+        }, CodeTrie::estimatedBytes);
     }
 
     @Data
     private class CodeContext {
-        final Map<String, List<String>> wordMap = new HashMap<>();
+        CodeTrie trie;
         String phrase;
+        /** 最长的字典词的长度。 */
         int maxWordLength = 0;
+        /** 每个词组最多输出的编码数，0 表示不限。 */
+        int topK = 0;
+        /** 只输出总码长最短的编码。 */
+        boolean shortest;
+        /** 编码线程数。 */
+        int threads = 1;
+        /** 按概率从高到低输出。 */
+        boolean ranked;
+        /** 每个词组的用时上限（毫秒），0 表示不限。 */
+        long timeLimit = 0;
+        RunStats runStats;
         private Charset encoding;
         private Path outputPath;
         private Path inputPath;
 
-        public CodeContext setWordMap(Map<String, List<String>> map) {
-            wordMap.clear();
-            maxWordLength = 0;
-            if (map != null){
-                wordMap.putAll(map);
-            }
-            for(List<String> l : map.values()) {
-                if (l.size() > maxWordLength) {
-                    maxWordLength = l.size();
-                }
-            }
+        public CodeContext setTrie(CodeTrie t) {
+            trie = t;
+            maxWordLength = t.getMaxKeyLength();
 
             return this;
         }
@@ -190,8 +307,14 @@ public class CodeCmd implements CliCommand {
             CliCmdLineOption opt7 = CliCmdLineOption.builder().shortName("sc").description("使用速成编码文件").build();
             CliCmdLineOption opt8 = CliCmdLineOption.builder().shortName("wb").description("使用五笔编码文件").build();
             CliCmdLineOption opt9 = CliCmdLineOption.builder().shortName("cj").description("使用仓颉编码文件").build();
+            CliCmdLineOption opt10 = CliCmdLineOption.builder().shortName("k").hasArg(true).description("每个词组只输出前 k 种编码。").build();
+            CliCmdLineOption opt11 = CliCmdLineOption.builder().shortName("short").description("每个词组只输出总码长最短的编码。").build();
+            CliCmdLineOption opt12 = CliCmdLineOption.builder().shortName("j").longName("jobs").hasArg(true).description("编码线程数，默认为 1。输出顺序与输入相同。").build();
+            CliCmdLineOption opt13 = CliCmdLineOption.builder().shortName("t").hasArg(true).description("每个词组的用时上限（毫秒），超时后放弃剩下的编码。").build();
+            CliCmdLineOption opt14 = CliCmdLineOption.builder().shortName("rank").description("按编码在字典中的先后估计常用程度，先输出最常用的编码，建议与 -k 一起使用。").build();
 
-            parser.addOption(opt1, opt2, opt3, opt4, opt5, opt6, opt7, opt8, opt9);
+            parser.addOption(opt1, opt2, opt3, opt4, opt5, opt6, opt7, opt8, opt9, opt10, opt11, opt12, opt13, opt14,
+                    RunStats.option());
 
         }
 
@@ -262,41 +385,51 @@ public class CodeCmd implements CliCommand {
             codeCtx.setEncoding(getEncoding(arguments));
 
             codeCtx.setOutputPath(Paths.get("coded.txt"));
-            Map<String, List<String>> mapping;
+            CodeTrie trie;
             int column = getColumn(arguments);
-            if (arguments.hasParam("b")) {
-                String mappingFile = arguments.getParam("b");
-                Charset baseFileEncoding = getMapFileEncoding(arguments, codeCtx.getEncoding());
-                mapping = ResourcesFiles.loadAsMapList(mappingFile, baseFileEncoding.name());
-                c.printf("编码文件： %s%n", mappingFile);
-                c.printf("字符编码： %s%n", baseFileEncoding);
-            } else if (arguments.hasParam("-py")) {
-                mapping = ResourcesFiles.loadAsMapList("gbkpy.txt");
-                c.printf("编码文件： 使用内置全拼%n");
-            } else if (arguments.hasParam("-he")) {
-                mapping = ResourcesFiles.loadAsMapList("he.txt");
-                c.printf("编码文件： 使用内置小鹤双拼%n");
-            } else if (arguments.hasParam("-wb")) {
-                mapping = ResourcesFiles.loadAsMapList("wubi.txt");
-                c.printf("编码文件： 使用内置五笔%n");
-            } else if (arguments.hasParam("-cj")) {
-                mapping = ResourcesFiles.loadAsMapList("cj5-70000.txt");
-                c.printf("编码文件： 使用内置仓颉%n");
-            } else if (arguments.hasParam("-sc")) {
-                mapping = ResourcesFiles.loadAsMapList("sc.txt");
-                c.printf("编码文件： 使用内置速成%n");
-            } else {
-                DESCRIPTOR.printUsage(c);
-                error = true;
-                return this;
+            codeCtx.setRunStats(RunStats.start(CMD_NAME, arguments));
+            try (RunStats.Phase p = codeCtx.getRunStats().phase(RunStats.PHASE_LOAD)) {
+                if (arguments.hasParam("b")) {
+                    String mappingFile = arguments.getParam("b");
+                    Charset baseFileEncoding = getMapFileEncoding(arguments,
+                            codeCtx.getEncoding());
+                    trie = loadTrie(mappingFile, baseFileEncoding.name());
+                    c.printf("编码文件： %s%n", mappingFile);
+                    c.printf("字符编码： %s%n", baseFileEncoding);
+                } else if (arguments.hasParam("-py")) {
+                    trie = loadTrie("gbkpy.txt", null);
+                    c.printf("编码文件： 使用内置全拼%n");
+                } else if (arguments.hasParam("-he")) {
+                    trie = loadTrie("he.txt", null);
+                    c.printf("编码文件： 使用内置小鹤双拼%n");
+                } else if (arguments.hasParam("-wb")) {
+                    trie = loadTrie("wubi.txt", null);
+                    c.printf("编码文件： 使用内置五笔%n");
+                } else if (arguments.hasParam("-cj")) {
+                    trie = loadTrie("cj5-70000.txt", null);
+                    c.printf("编码文件： 使用内置仓颉%n");
+                } else if (arguments.hasParam("-sc")) {
+                    trie = loadTrie("sc.txt", null);
+                    c.printf("编码文件： 使用内置速成%n");
+                } else {
+                    DESCRIPTOR.printUsage(c);
+                    error = true;
+                    return this;
+                }
             }
 
-            codeCtx.setWordMap(mapping);
+            codeCtx.setTrie(trie);
+            codeCtx.setTopK(getTopK(arguments));
+            codeCtx.setShortest(arguments.hasParam("short"));
+            codeCtx.setThreads(CommandOptions.getThreads(arguments));
+            codeCtx.setRanked(arguments.hasParam("rank"));
+            codeCtx.setTimeLimit(getTimeLimit(arguments));
             codeCtx.setInputPath(getInputPath(arguments));
             c.printf("处理文件： %s%n", codeCtx.getInputPath());
             c.printf("字符编码： %s%n", codeCtx.getEncoding());
             c.printf("行分隔符： %s%n", delimiter);
             c.printf("行： %d%n", column);
+            c.printf("线程数： %d%n", codeCtx.getThreads());
             c.printf("输出文件： %s%n", codeCtx.getOutputPath());
             c.printf("%n");
             c.flush();
@@ -336,6 +469,30 @@ public class CodeCmd implements CliCommand {
             return column;
         }
 
+        private long getTimeLimit(CliArguments arguments) {
+            long millis = 0;
+            if (arguments.hasParam("t")) {
+                try {
+                    millis = Long.parseLong(arguments.getParam("t"));
+                } catch (NumberFormatException e) {
+                    millis = 0;
+                }
+            }
+            return Math.max(0, millis);
+        }
+
+        private int getTopK(CliArguments arguments) {
+            int k = 0;
+            if (arguments.hasParam("k")) {
+                try {
+                    k = Integer.parseInt(arguments.getParam("k"));
+                } catch (NumberFormatException e) {
+                    k = 0;
+                }
+            }
+            return Math.max(0, k);
+        }
+
         private Charset getMapFileEncoding(final CliArguments arguments, final Charset encoding) {
             Charset e = encoding;
             if (arguments.hasParam("be")) {
@@ -0,0 +1,483 @@
+package me.asu.cli.command.code;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 词组的切分图，逐个给出整个词组的编码。
+ * <p>
+ * 每个位置到它能匹配的字典词的结尾各有一条边，边上挂着该词的编码列表；一个位置的所有匹配由
+ * {@link CodeTrie} 沿词组逐字走一遍得到。建图时从后往前算出
+ * 每个位置能否走到词组末尾，以及走到末尾的最短总码长；枚举时跳过走不到末尾的边，
+ * 不会在死路上展开。枚举用数组保存每层选中的边和编码，按需前进到下一种编码，不复制列表，
+ * 顺序与逐层递归相同：先按词的结尾从近到远，再按编码在字典中的顺序。
+ * <p>
+ * 按概率排序时，把编码在字典中的序号 r 当作常用程度，代价为 ln(1 + r)，一种编码的代价是各词代价之和。
+ * 建图时同样从后往前算出每个位置到末尾的最小代价，作为 A* 搜索的估价；估价是精确的，
+ * 所以按代价从小到大逐个给出编码，只展开必要的部分。
+ * <p>
+ * 每个词组的编码个数和用时都可以设上限，{@link #isTruncated()} 和 {@link #isTimedOut()}
+ * 说明枚举是否因此提前结束。按概率排序时，给出第一种编码之前的展开同样检查用时；
+ * 部分路径最多保存 {@link #MAX_NODES} 个，用完后停止枚举，{@link #isFrontierFull()} 为 true。
+ * <p>
+ * 同一个实例可以反复 {@link #reset} 用于多个词组，不是线程安全的。
+ */
+public class CodeLattice {
+
+    /** 按概率排序时最多保存的部分路径数，每个约 28 字节。 */
+    static final int MAX_NODES = 1 << 20;
+    /** 展开这么多个部分路径检查一次用时。 */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final CodeTrie trie;
+
+    private String phrase;
+    private int    n;
+    /** 位置 s 的边是 [first[s], first[s + 1])。 */
+    private int[]          first     = new int[17];
+    private int[]          edgeEnd   = new int[64];
+    private List<String>[] edgeCodes = newLists(64);
+    private int            edges;
+    private boolean[]      canFinish = new boolean[17];
+    /** 从该位置走到末尾的最短总码长。 */
+    private int[]          minLength = new int[17];
+    /** 从该位置走到末尾的最小代价，只在按概率排序时使用。 */
+    private double[]       minCost   = new double[17];
+
+    private boolean ranked;
+    private long    timeLimit;
+    private long    deadline;
+    private boolean truncated;
+    private boolean timedOut;
+    private boolean frontierFull;
+
+    /** A* 搜索的部分路径，按编号存放；根节点的父节点为 -1。 */
+    private int      nodes;
+    private int[]    nodeParent = new int[64];
+    private int[]    nodeEdge   = new int[64];
+    private int[]    nodeCode   = new int[64];
+    private int[]    nodePos    = new int[64];
+    private double[] nodeCost   = new double[64];
+    private int[]    heap       = new int[64];
+    private int      heapSize;
+
+    private boolean shortest;
+    private int     limit;
+    private int     emitted;
+    private boolean started;
+    private boolean exhausted;
+    private int     depth;
+    private int[]   posAt  = new int[16];
+    private int[]   edgeAt = new int[16];
+    private int[]   codeAt = new int[16];
+
+    public CodeLattice(CodeTrie trie) {
+        this.trie = trie;
+    }
+
+    /** 按概率从高到低给出编码。 */
+    public CodeLattice setRanked(boolean ranked) {
+        this.ranked = ranked;
+        return this;
+    }
+
+    /**
+     * @param millis 每个词组的用时上限，0 表示不限
+     */
+    public CodeLattice setTimeLimit(long millis) {
+        this.timeLimit = millis * 1000000L;
+        return this;
+    }
+
+    /**
+     * 为词组建图，并从第一种编码开始枚举。
+     *
+     * @param shortest 只枚举总码长最短的编码
+     * @param limit    最多枚举的个数，0 表示不限
+     */
+    public CodeLattice reset(String phrase, boolean shortest, int limit) {
+        this.phrase = phrase;
+        this.n = phrase.length();
+        this.shortest = shortest;
+        this.limit = limit;
+        this.emitted = 0;
+        this.started = false;
+        this.exhausted = false;
+        this.truncated = false;
+        this.timedOut = false;
+        this.frontierFull = false;
+        this.deadline = timeLimit > 0 ? System.nanoTime() + timeLimit : 0;
+        ensureCapacity(n);
+        build();
+        if (ranked) {
+            nodes = 0;
+            heapSize = 0;
+            if (n > 0 && canFinish[0]) {
+                push(newNode(-1, -1, -1, 0, 0));
+            }
+        }
+        return this;
+    }
+
+    /** 整个词组是否至少有一种编码。 */
+    public boolean hasCoding() {
+        return canFinish[0];
+    }
+
+    /** 最短总码长，没有编码时为 {@link Integer#MAX_VALUE}。 */
+    public int getMinLength() {
+        return minLength[0];
+    }
+
+    /** 已给出的编码个数。 */
+    public int getEmitted() {
+        return emitted;
+    }
+
+    /** 是否因为个数上限还有编码没有给出。 */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /** 是否因为超时还有编码没有给出。 */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /** 是否因为部分路径数达到 {@link #MAX_NODES} 还有编码没有给出。 */
+    public boolean isFrontierFull() {
+        return frontierFull;
+    }
+
+    /**
+     * 前进到下一种编码。
+     *
+     * @return 没有更多编码、达到个数上限或超时返回 false
+     */
+    public boolean next() {
+        if (exhausted) {
+            return false;
+        }
+        if (limit > 0 && emitted >= limit) {
+            // 堆里的部分路径都能走到末尾，有就是截掉了编码，不必再展开；
+            // 深度优先时再走一步才知道
+            truncated = ranked ? heapSize > 0 : stepDepthFirst();
+            exhausted = true;
+            return false;
+        }
+        if (!step()) {
+            exhausted = true;
+            return false;
+        }
+        if (expired()) {
+            timedOut = true;
+            exhausted = true;
+            return false;
+        }
+        emitted++;
+        return true;
+    }
+
+    private boolean expired() {
+        return deadline != 0 && System.nanoTime() - deadline > 0;
+    }
+
+    private boolean step() {
+        return ranked ? stepRanked() : stepDepthFirst();
+    }
+
+    private boolean stepDepthFirst() {
+        int d;
+        if (!started) {
+            started = true;
+            if (n == 0 || !canFinish[0]) {
+                return false;
+            }
+            d = 0;
+            posAt[0] = 0;
+            edgeAt[0] = first[0];
+            codeAt[0] = -1;
+            if (!advance(0)) {
+                return false;
+            }
+        } else {
+            d = depth - 1;
+            while (!advance(d)) {
+                if (--d < 0) {
+                    return false;
+                }
+            }
+        }
+        // 沿第一条可行的边一直走到词组末尾
+        while (edgeEnd[edgeAt[d]] != n) {
+            int end = edgeEnd[edgeAt[d]];
+            d++;
+            posAt[d] = end;
+            edgeAt[d] = first[end];
+            codeAt[d] = -1;
+            advance(d);
+        }
+        depth = d + 1;
+        return true;
+    }
+
+    /** 取出估计总代价最小的部分路径，走到末尾的就是下一种编码，否则展开它。 */
+    private boolean stepRanked() {
+        int expanded = 0;
+        while (heapSize > 0) {
+            if (++expanded % DEADLINE_CHECK_INTERVAL == 0 && expired()) {
+                timedOut = true;
+                return false;
+            }
+            int id = pop();
+            int pos = nodePos[id];
+            if (pos == n) {
+                materialize(id);
+                return true;
+            }
+            for (int e = first[pos]; e < first[pos + 1]; e++) {
+                int end = edgeEnd[e];
+                if (!canFinish[end]) {
+                    continue;
+                }
+                List<String> codes = edgeCodes[e];
+                for (int k = 0; k < codes.size(); k++) {
+                    if (accept(pos, end, codes.get(k))) {
+                        if (nodes == MAX_NODES) {
+                            frontierFull = true;
+                            return false;
+                        }
+                        push(newNode(id, e, k, end, nodeCost[id] + rankCost(k)));
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double rankCost(int rank) {
+        return Math.log1p(rank);
+    }
+
+    private boolean accept(int pos, int end, String code) {
+        return !shortest || code.length() + minLength[end] == minLength[pos];
+    }
+
+    /** 把路径展开到 posAt/edgeAt/codeAt，与深度优先时相同。 */
+    private void materialize(int id) {
+        int d = 0;
+        for (int i = id; nodeParent[i] >= 0; i = nodeParent[i]) {
+            d++;
+        }
+        depth = d;
+        for (int i = id; nodeParent[i] >= 0; i = nodeParent[i]) {
+            d--;
+            posAt[d] = nodePos[nodeParent[i]];
+            edgeAt[d] = nodeEdge[i];
+            codeAt[d] = nodeCode[i];
+        }
+    }
+
+    private int newNode(int parent, int edge, int code, int pos, double cost) {
+        if (nodes == nodeParent.length) {
+            int cap = nodes * 2;
+            nodeParent = Arrays.copyOf(nodeParent, cap);
+            nodeEdge = Arrays.copyOf(nodeEdge, cap);
+            nodeCode = Arrays.copyOf(nodeCode, cap);
+            nodePos = Arrays.copyOf(nodePos, cap);
+            nodeCost = Arrays.copyOf(nodeCost, cap);
+        }
+        nodeParent[nodes] = parent;
+        nodeEdge[nodes] = edge;
+        nodeCode[nodes] = code;
+        nodePos[nodes] = pos;
+        nodeCost[nodes] = cost;
+        return nodes++;
+    }
+
+    /** 估计总代价小的在前，相同时先建的在前。 */
+    private boolean before(int a, int b) {
+        double fa = nodeCost[a] + minCost[nodePos[a]];
+        double fb = nodeCost[b] + minCost[nodePos[b]];
+        return fa < fb || (fa == fb && a < b);
+    }
+
+    private void push(int id) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(id, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = id;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], last)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) {
+            heap[i] = last;
+        }
+        return top;
+    }
+
+    /** 当前编码由几个词组成。 */
+    public int getWordCount() {
+        return depth;
+    }
+
+    /** 当前编码第 i 个词的编码。 */
+    public String getCode(int i) {
+        return edgeCodes[edgeAt[i]].get(codeAt[i]);
+    }
+
+    /** 当前编码第 i 个词。 */
+    public String getWord(int i) {
+        return phrase.substring(posAt[i], edgeEnd[edgeAt[i]]);
+    }
+
+    /**
+     * 按“词组&lt;TAB&gt;编码 编码 ...”写出当前编码，不含行尾。
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append(phrase).append('\t');
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            out.append(getCode(i));
+        }
+    }
+
+    /** 在第 d 层从当前选择往后找下一条可行的边和编码。 */
+    private boolean advance(int d) {
+        int last = first[posAt[d] + 1];
+        int k = codeAt[d] + 1;
+        for (int e = edgeAt[d]; e < last; e++, k = 0) {
+            int end = edgeEnd[e];
+            if (!canFinish[end]) {
+                continue;
+            }
+            List<String> codes = edgeCodes[e];
+            for (; k < codes.size(); k++) {
+                if (accept(posAt[d], end, codes.get(k))) {
+                    edgeAt[d] = e;
+                    codeAt[d] = k;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void build() {
+        edges = 0;
+        for (int s = 0; s < n; s++) {
+            first[s] = edges;
+            int node = CodeTrie.ROOT;
+            for (int i = s; i < n; i++) {
+                node = trie.child(node, phrase.charAt(i));
+                if (node < 0) {
+                    break;
+                }
+                List<String> codes = trie.value(node);
+                if (codes != null) {
+                    addEdge(i + 1, codes);
+                }
+            }
+        }
+        first[n] = edges;
+
+        canFinish[n] = true;
+        minLength[n] = 0;
+        for (int s = n - 1; s >= 0; s--) {
+            boolean ok = false;
+            int min = Integer.MAX_VALUE;
+            for (int e = first[s]; e < first[s + 1]; e++) {
+                int end = edgeEnd[e];
+                if (!canFinish[end]) {
+                    continue;
+                }
+                ok = true;
+                for (String code : edgeCodes[e]) {
+                    min = Math.min(min, code.length() + minLength[end]);
+                }
+            }
+            canFinish[s] = ok;
+            minLength[s] = min;
+        }
+
+        if (!ranked) {
+            return;
+        }
+        minCost[n] = 0;
+        for (int s = n - 1; s >= 0; s--) {
+            double min = Double.POSITIVE_INFINITY;
+            if (canFinish[s]) {
+                for (int e = first[s]; e < first[s + 1]; e++) {
+                    int end = edgeEnd[e];
+                    if (!canFinish[end]) {
+                        continue;
+                    }
+                    List<String> codes = edgeCodes[e];
+                    for (int k = 0; k < codes.size(); k++) {
+                        if (accept(s, end, codes.get(k))) {
+                            min = Math.min(min, rankCost(k) + minCost[end]);
+                        }
+                    }
+                }
+            }
+            minCost[s] = min;
+        }
+    }
+
+    private void addEdge(int end, List<String> codes) {
+        if (edges == edgeEnd.length) {
+            edgeEnd = Arrays.copyOf(edgeEnd, edges * 2);
+            edgeCodes = Arrays.copyOf(edgeCodes, edges * 2);
+        }
+        edgeEnd[edges] = end;
+        edgeCodes[edges] = codes;
+        edges++;
+    }
+
+    private void ensureCapacity(int len) {
+        if (first.length < len + 1) {
+            int cap = Math.max(len + 1, first.length * 2);
+            first = new int[cap];
+            canFinish = new boolean[cap];
+            minLength = new int[cap];
+            minCost = new double[cap];
+            posAt = new int[cap];
+            edgeAt = new int[cap];
+            codeAt = new int[cap];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String>[] newLists(int size) {
+        return (List<String>[]) new List[size];
+    }
+}
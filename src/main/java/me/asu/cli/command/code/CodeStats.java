@@ -0,0 +1,49 @@
+package me.asu.cli.command.code;
+
+import me.asu.tui.framework.api.CliConsole;
+
+/**
+ * 编码计数，各线程分别累计后合并。
+ */
+class CodeStats {
+
+    long phrases;
+    long uncoded;
+    long codings;
+    long truncated;
+    long timedOut;
+    long frontierFull;
+
+    /** 在一个词组枚举结束后调用。 */
+    void add(CodeLattice lattice) {
+        phrases++;
+        codings += lattice.getEmitted();
+        if (!lattice.hasCoding()) {
+            uncoded++;
+        }
+        if (lattice.isTruncated()) {
+            truncated++;
+        }
+        if (lattice.isTimedOut()) {
+            timedOut++;
+        }
+        if (lattice.isFrontierFull()) {
+            frontierFull++;
+        }
+    }
+
+    void add(CodeStats other) {
+        phrases += other.phrases;
+        uncoded += other.uncoded;
+        codings += other.codings;
+        truncated += other.truncated;
+        timedOut += other.timedOut;
+        frontierFull += other.frontierFull;
+    }
+
+    void print(CliConsole c) {
+        c.printf("词组： %d，输出编码： %d%n", phrases, codings);
+        c.printf("无法编码： %d，达到个数上限： %d，超时： %d，搜索节点用完： %d%n", uncoded, truncated,
+                timedOut, frontierFull);
+    }
+}
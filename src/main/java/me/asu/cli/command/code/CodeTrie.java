@@ -0,0 +1,137 @@
+package me.asu.cli.command.code;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 字典词到编码列表的只读字典树。
+ * <p>
+ * 节点按层序编号，同一节点的子节点连续存放并按字符排序，查子节点是在一小段字符数组里二分查找。
+ * 从词组的某个位置逐字往下走，沿途遇到的每个带编码的节点就是一个以该位置开头的字典词，
+ * 一次遍历得到全部匹配，不创建子串。
+ */
+public class CodeTrie {
+
+    public static final int ROOT = 0;
+
+    /** 节点的字符，根节点不用。 */
+    private final char[]         labels;
+    /** 子节点是 [firstChild[i], firstChild[i + 1])。 */
+    private final int[]          firstChild;
+    private final List<String>[] values;
+    private final int            maxKeyLength;
+    private final int            size;
+    private final long           estimatedBytes;
+
+    @SuppressWarnings("unchecked")
+    public CodeTrie(Map<String, List<String>> map) {
+        Node root = new Node();
+        int longest = 0;
+        int count = 0;
+        int nodes = 1;
+        long codeBytes = 0;
+        for (Map.Entry<String, List<String>> e : map.entrySet()) {
+            List<String> codes = e.getValue();
+            if (codes == null || codes.isEmpty() || e.getKey().isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            String key = e.getKey();
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(key.charAt(i), child);
+                    nodes++;
+                }
+                node = child;
+            }
+            node.value = codes;
+            codeBytes += 40 + codes.size() * 8L;
+            for (String code : codes) {
+                codeBytes += 56 + code.length() * 2L;
+            }
+            longest = Math.max(longest, key.length());
+            count++;
+        }
+
+        labels = new char[nodes];
+        firstChild = new int[nodes + 1];
+        values = (List<String>[]) new List[nodes];
+        // 层序展开，子节点按 TreeMap 的顺序排好
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        int id = 0;
+        int next = 1;
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            values[id] = node.value;
+            firstChild[id] = next;
+            for (Map.Entry<Character, Node> e : node.children.entrySet()) {
+                labels[next++] = e.getKey();
+                queue.add(e.getValue());
+            }
+            id++;
+        }
+        firstChild[nodes] = next;
+        this.maxKeyLength = longest;
+        this.size = count;
+        this.estimatedBytes = nodes * 14L + codeBytes;
+    }
+
+    /**
+     * @return 子节点，没有时返回 -1
+     */
+    public int child(int node, char c) {
+        int lo = firstChild[node];
+        int hi = firstChild[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = labels[mid];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 节点上的编码列表，不是字典词时返回 null
+     */
+    public List<String> value(int node) {
+        return values[node];
+    }
+
+    /** 最长的字典词的长度。 */
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
+
+    /** 字典词个数。 */
+    public int size() {
+        return size;
+    }
+
+    /** 估算占用的字节数：节点数组加上编码列表。 */
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /** 节点个数。 */
+    public int nodeCount() {
+        return labels.length;
+    }
+
+    private static class Node {
+
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        List<String>                   value;
+    }
+}
@@ -0,0 +1,208 @@
+package me.asu.cli.command.dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import me.asu.cli.command.util.BinaryDicts;
+import me.asu.cli.command.util.OsHelper;
+import me.asu.cli.command.util.ResourcesFiles;
+import me.asu.cli.command.util.RunStats;
+import me.asu.tui.framework.api.CliCommand;
+import me.asu.tui.framework.api.CliConsole;
+import me.asu.tui.framework.api.CliContext;
+import me.asu.tui.framework.util.CliArguments;
+import me.asu.tui.framework.util.CliCmdLineOption;
+import me.asu.tui.framework.util.CliCmdLineParser;
+
+/**
+ * 把文本字典编译成二进制格式，加快各命令启动。
+ */
+public class DictCompileCmd implements CliCommand
+{
+
+    private static final String     NAMESPACE  = "asu";
+    private static final String     CMD_NAME   = "dict-compile";
+    private static final Descriptor DESCRIPTOR = new InnerDescriptor();
+
+    /** 按行列表加载的内置资源。 */
+    private static final List<String> LINE_RESOURCES = Arrays.asList(
+            "sort-order.txt", "sort-order-t.txt", "sort-order-phrases.txt");
+    /** 按键到编码列表加载的内置资源。 */
+    private static final List<String> MAP_RESOURCES  = Arrays.asList(
+            "gbkpy.txt", "he.txt", "wubi.txt", "cj5-70000.txt", "sc.txt");
+
+    @Override
+    public Descriptor getDescriptor()
+    {
+        return DESCRIPTOR;
+    }
+
+    @Override
+    public Object execute(CliContext ctx, String[] args)
+    {
+        CliConsole c = ctx.getCliConsole();
+
+        CliArguments arguments = null;
+        try {
+            arguments = DESCRIPTOR.parse(args);
+        } catch (Exception e) {
+            DESCRIPTOR.printUsage(c);
+            return null;
+        }
+        if (arguments.hasParam("h")) {
+            DESCRIPTOR.printUsage(c);
+            return null;
+        }
+
+        String charset = arguments.hasParam("e") ? arguments.getParam("e") : null;
+        boolean asLines = arguments.hasParam("l");
+        try (RunStats stats = RunStats.start(CMD_NAME, arguments)) {
+            int failed = 0;
+            if (arguments.hasRemain()) {
+                for (String name : arguments.getRemain()) {
+                    failed += compile(c, stats, arguments, name, charset,
+                            asLines || LINE_RESOURCES.contains(name));
+                }
+            } else {
+                for (String name : LINE_RESOURCES) {
+                    failed += compile(c, stats, arguments, name, charset, true);
+                }
+                for (String name : MAP_RESOURCES) {
+                    failed += compile(c, stats, arguments, name, charset, false);
+                }
+            }
+            stats.report(c);
+            c.flush();
+            return failed == 0 ? 0 : 1;
+        }
+    }
+
+    private int compile(CliConsole c, RunStats stats, CliArguments arguments, String name,
+                        String charset, boolean asLines)
+    {
+        File source = ResourcesFiles.locate(name);
+        File target = new File(getOutputDir(arguments, source), new File(name).getName()
+                + BinaryDicts.SUFFIX);
+        long start = System.currentTimeMillis();
+        BinaryDicts.Source stamp = BinaryDicts.source(name);
+        try {
+            List<String> lines;
+            try (RunStats.Phase p = stats.phase(RunStats.PHASE_PARSE)) {
+                lines = ResourcesFiles.readTextLinesInResources(name, charset);
+            }
+            if (lines.isEmpty()) {
+                c.printf("找不到字典： %s%n", name);
+                return 1;
+            }
+            try (RunStats.Phase p = stats.phase(RunStats.PHASE_WRITE)) {
+                if (asLines) {
+                    BinaryDicts.writeLines(target, stamp, charset, lines);
+                } else {
+                    Map<String, List<String>> map = ResourcesFiles.toMapList(lines);
+                    BinaryDicts.writeMapList(target, stamp, charset, map);
+                }
+            }
+            stats.addLines(lines.size());
+            if (source != null) {
+                stats.addBytesRead(source.toPath());
+            }
+            stats.addBytesWritten(target.toPath());
+            c.printf("编译 %s -> %s，%d 行，耗时 %d ms%n", name, target, lines.size(),
+                    System.currentTimeMillis() - start);
+            return 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            c.printf("编译 %s 失败。%n", name);
+            return 1;
+        }
+    }
+
+    private File getOutputDir(CliArguments arguments, File source)
+    {
+        File dir;
+        if (arguments.hasParam("o")) {
+            dir = new File(arguments.getParam("o"));
+        } else if (source != null) {
+            dir = source.getAbsoluteFile().getParentFile();
+        } else {
+            dir = new File(OsHelper.getMyDIR());
+        }
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    @Override
+    public void plug(CliContext plug)
+    {
+        // nothing to do
+    }
+
+    @Override
+    public void unplug(CliContext plug)
+    {
+        // nothing to do
+    }
+
+    static class InnerDescriptor implements Descriptor
+    {
+
+        CliCmdLineParser parser = new CliCmdLineParser();
+
+        InnerDescriptor()
+        {
+            CliCmdLineOption opt1 = CliCmdLineOption.builder()
+                                                    .shortName("e")
+                                                    .hasArg(true)
+                                                    .description("字典文件字符编码。")
+                                                    .build();
+            CliCmdLineOption opt2 = CliCmdLineOption.builder()
+                                                    .shortName("h")
+                                                    .longName("help")
+                                                    .description("打印帮助信息。")
+                                                    .build();
+            CliCmdLineOption opt3 = CliCmdLineOption.builder()
+                                                    .shortName("o")
+                                                    .longName("output")
+                                                    .hasArg(true)
+                                                    .description("输出目录，默认与字典文件相同，内置字典输出到程序目录。")
+                                                    .build();
+            CliCmdLineOption opt4 = CliCmdLineOption.builder()
+                                                    .shortName("l")
+                                                    .longName("lines")
+                                                    .description("按行列表编译，默认按 字<TAB>编码 编译。")
+                                                    .build();
+
+            parser.addOption(opt1, opt2, opt3, opt4, RunStats.option());
+        }
+
+        @Override
+        public CliCmdLineParser getCliCmdLineParser()
+        {
+            return parser;
+        }
+
+        @Override
+        public String getNamespace()
+        {
+            return NAMESPACE;
+        }
+
+        @Override
+        public String getName()
+        {
+            return CMD_NAME;
+        }
+
+        @Override
+        public String getDescription()
+        {
+            return "把字典编译为二进制格式。不带参数时编译全部内置字典。";
+        }
+
+    }
+
+}
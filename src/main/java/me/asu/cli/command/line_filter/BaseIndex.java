@@ -0,0 +1,538 @@
+package me.asu.cli.command.line_filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import me.asu.cli.command.util.Fingerprints;
+
+/**
+ * 比对文件的磁盘索引，映射到内存查询，堆上只有一张 512K 的基数表。
+ * <p>
+ * 先查分块布隆过滤器：一个键的所有位都落在同一个 64 字节的块里，只访问一次缓存行，
+ * 不在比对文件中的键大多在这里被排除。通过的键按指纹高 16 位在基数表里找到有序指纹数组的一段，
+ * 二分查找后逐个比较原文，结果是精确的。
+ * <p>
+ * 索引默认保存在比对文件旁边（文件名加 {@code .idx}），以比对文件的路径、大小、修改时间和字符编码为键，
+ * 比对文件不变时直接映射已有的索引；目录不可写时建在临时文件里，用完删除。
+ * <p>
+ * 文件格式（大端，各段按 8 字节对齐）：
+ * <pre>
+ * 文件头     magic、版本、条目数、布隆块数、各段位置，共 64 字节
+ * 键         long 比对文件大小、long 修改时间、string 路径、string 字符编码
+ * 基数表     65537 × long，指纹高 16 位为 b 的条目位于 [t[b], t[b + 1])
+ * 布隆过滤器 块数 × 64 字节
+ * 指纹       条目数 × long，按无符号升序
+ * 原文位置   条目数 × long，相对原文段起点
+ * 原文       每条 int 字符数 + UTF-16 字符，补齐到 4 字节
+ * string = int 字节数 + UTF-8 字节
+ * </pre>
+ */
+class BaseIndex implements BaseSet
+{
+
+    static final String SUFFIX  = ".idx";
+    static final int    MAGIC   = 0x4C464958;
+    static final int    VERSION = 2;
+
+    private static final int  HEADER_SIZE      = 64;
+    private static final int  RADIX_BITS       = 16;
+    private static final int  RADIX            = 1 << RADIX_BITS;
+    private static final int  BLOCK_BYTES      = 64;
+    private static final int  BITS_PER_KEY     = 10;
+    private static final int  HASHES           = 7;
+    private static final int  SEGMENT_BITS     = 30;
+    private static final long SEGMENT_MASK     = (1L << SEGMENT_BITS) - 1;
+    private static final int  BUFFER_SIZE      = 1 << 16;
+    private static final int  PARTITION_BUFFER = 1 << 15;
+    private static final int  MAX_BITS         = 8;
+    /** 每个分区的目标大小，排序时分区整个读进内存。 */
+    private static final long PARTITION_BYTES  = 1L << 24;
+
+    private final Path         path;
+    private final boolean      deleteOnClose;
+    private final ByteBuffer[] segments;
+    private final long[]       radix;
+    private final long         count;
+    private final long         blocks;
+    private final long         bloomPos;
+    private final long         fpsPos;
+    private final long         offsPos;
+    private final long         dataPos;
+    private final long         sourceSize;
+    private final long         sourceMtime;
+    private final String       sourcePath;
+    private final String       charsetName;
+    private       boolean      reused;
+
+    private BaseIndex(Path path, boolean deleteOnClose, ByteBuffer[] segments) throws IOException
+    {
+        this.path = path;
+        this.deleteOnClose = deleteOnClose;
+        this.segments = segments;
+        if (segments.length == 0 || getInt(0) != MAGIC || getInt(4) != VERSION) {
+            throw new IOException("bad index file: " + path);
+        }
+        this.count = getLong(8);
+        this.blocks = getLong(16);
+        this.bloomPos = getLong(24);
+        this.fpsPos = getLong(32);
+        this.offsPos = getLong(40);
+        this.dataPos = getLong(48);
+        long radixPos = getLong(56);
+        this.sourceSize = getLong(HEADER_SIZE);
+        this.sourceMtime = getLong(HEADER_SIZE + 8);
+        long pos = HEADER_SIZE + 16;
+        this.sourcePath = getString(pos);
+        pos += 4 + getInt(pos);
+        this.charsetName = getString(pos);
+        this.radix = new long[RADIX + 1];
+        for (int i = 0; i <= RADIX; i++) {
+            radix[i] = getLong(radixPos + i * 8L);
+        }
+    }
+
+    /**
+     * 加载比对文件的索引。旁边已有的索引与比对文件相符时直接使用，否则重新建立并保存。
+     */
+    static BaseIndex load(Path source, Charset charset) throws IOException
+    {
+        source = source.toAbsolutePath().normalize();
+        Path cache = source.resolveSibling(source.getFileName() + SUFFIX);
+        if (Files.isRegularFile(cache)) {
+            try {
+                BaseIndex index = open(cache, false);
+                if (index.matches(source, charset)) {
+                    index.reused = true;
+                    return index;
+                }
+            } catch (IOException | RuntimeException e) {
+                // 损坏或旧版本的索引，重新建立
+            }
+        }
+        Path tmp;
+        try {
+            tmp = Files.createTempFile(cache.getParent(), cache.getFileName().toString(), ".tmp");
+        } catch (IOException e) {
+            return build(source, charset);
+        }
+        try {
+            write(source, charset, tmp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try {
+            Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // 旧索引仍被占用（Windows 下映射未释放），这次直接用新文件
+            return open(tmp, true);
+        }
+        return open(cache, false);
+    }
+
+    /**
+     * 为比对文件建立索引，写入临时文件，关闭时删除。
+     */
+    static BaseIndex build(Path source, Charset charset) throws IOException
+    {
+        Path target = Files.createTempFile("line-filter-", ".idx");
+        try {
+            write(source, charset, target);
+            return open(target, true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    static BaseIndex open(Path path, boolean deleteOnClose) throws IOException
+    {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            int n = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+            ByteBuffer[] segments = new ByteBuffer[n];
+            for (int i = 0; i < n; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = ch.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(1L << SEGMENT_BITS, size - start));
+            }
+            return new BaseIndex(path, deleteOnClose, segments);
+        }
+    }
+
+    @Override
+    public boolean contains(CharSequence key)
+    {
+        long fp = Fingerprints.hash64(key);
+        if (!mightContain(fp)) {
+            return false;
+        }
+        int b = (int) (fp >>> (64 - RADIX_BITS));
+        long lo = radix[b];
+        long hi = radix[b + 1];
+        long end = hi;
+        // 同一段内指纹高位相同，有符号比较与无符号比较一致
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (getLong(fpsPos + mid * 8) < fp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (long i = lo; i < end && getLong(fpsPos + i * 8) == fp; i++) {
+            if (sameText(dataPos + getLong(offsPos + i * 8), key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long size()
+    {
+        return count;
+    }
+
+    Path getPath()
+    {
+        return path;
+    }
+
+    /** 是否使用了已有的索引。 */
+    boolean isReused()
+    {
+        return reused;
+    }
+
+    private boolean matches(Path source, Charset charset) throws IOException
+    {
+        return sourcePath.equals(source.toString()) && charsetName.equals(charset.name())
+                && sourceSize == Files.size(source)
+                && sourceMtime == Files.getLastModifiedTime(source).toMillis();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (deleteOnClose) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // Windows 下映射未释放时无法删除
+                path.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private boolean mightContain(long fp)
+    {
+        long block = bloomPos + blockOf(fp, blocks) * BLOCK_BYTES;
+        long g = Fingerprints.mix(fp);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (g >>> (9 * i)) & 511;
+            if ((getLong(block + (bit >>> 6) * 8) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long blockOf(long fp, long blocks)
+    {
+        return ((fp >>> 32) * blocks) >>> 32;
+    }
+
+    private boolean sameText(long pos, CharSequence key)
+    {
+        int len = getInt(pos);
+        if (len != key.length()) {
+            return false;
+        }
+        pos += 4;
+        for (int i = 0; i < len; i++) {
+            if (getChar(pos + i * 2L) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getLong(long pos)
+    {
+        return segments[(int) (pos >>> SEGMENT_BITS)].getLong((int) (pos & SEGMENT_MASK));
+    }
+
+    private int getInt(long pos)
+    {
+        return segments[(int) (pos >>> SEGMENT_BITS)].getInt((int) (pos & SEGMENT_MASK));
+    }
+
+    private char getChar(long pos)
+    {
+        return segments[(int) (pos >>> SEGMENT_BITS)].getChar((int) (pos & SEGMENT_MASK));
+    }
+
+    /** 文件头和键都在第一个分段内。 */
+    private String getString(long pos)
+    {
+        int len = getInt(pos);
+        if (len < 0 || pos + 4 + len > segments[0].limit()) {
+            throw new IllegalArgumentException("bad string length: " + len);
+        }
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = segments[0].get((int) pos + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 第一遍按指纹高位把 (指纹, 原文位置) 分区写入临时文件，同时写出原文；
+     * 第二遍逐个分区排序，写入指纹、原文位置并设置布隆过滤器，最后拼上原文。
+     */
+    static void write(Path source, Charset charset, Path target) throws IOException
+    {
+        source = source.toAbsolutePath().normalize();
+        ByteBuffer key = key(source, charset);
+        int bits = partitionBits(Files.size(source));
+        Path dir = Files.createTempDirectory("line-filter-");
+        Path[] parts = new Path[1 << bits];
+        Path data = dir.resolve("data");
+        try {
+            long count = split(source, charset, data, parts, bits);
+            assemble(target, key, parts, data, count);
+        } finally {
+            for (Path f : parts) {
+                if (f != null) {
+                    Files.deleteIfExists(f);
+                }
+            }
+            Files.deleteIfExists(data);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /** 比对文件大小和修改时间在读取之前取得，读取期间文件被修改时下次会重新建立。 */
+    private static ByteBuffer key(Path source, Charset charset) throws IOException
+    {
+        byte[] path = source.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] cs = charset.name().getBytes(StandardCharsets.UTF_8);
+        int len = 16 + 4 + path.length + 4 + cs.length;
+        ByteBuffer key = ByteBuffer.allocate((len + 7) & ~7);
+        key.putLong(Files.size(source));
+        key.putLong(Files.getLastModifiedTime(source).toMillis());
+        key.putInt(path.length).put(path);
+        key.putInt(cs.length).put(cs);
+        key.clear();
+        return key;
+    }
+
+    /** 至少分两个区，保证分区内指纹符号相同，有符号排序即无符号顺序。 */
+    private static int partitionBits(long sourceSize)
+    {
+        int bits = 1;
+        while (bits < MAX_BITS && (sourceSize >> bits) > PARTITION_BYTES) {
+            bits++;
+        }
+        return bits;
+    }
+
+    private static long split(Path source, Charset charset, Path data, Path[] parts, int bits)
+            throws IOException
+    {
+        DataOutputStream[] outs = new DataOutputStream[parts.length];
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(source), charset), BUFFER_SIZE);
+             DataOutputStream text = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(data), BUFFER_SIZE))) {
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = data.resolveSibling("part-" + i);
+                outs[i] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(parts[i]), PARTITION_BUFFER));
+            }
+            long count = 0;
+            long pos = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long fp = Fingerprints.hash64(line);
+                DataOutputStream out = outs[(int) (fp >>> (64 - bits))];
+                out.writeLong(fp);
+                out.writeLong(pos);
+                int len = line.length();
+                text.writeInt(len);
+                text.writeChars(line);
+                if ((len & 1) != 0) {
+                    text.writeChar(0);
+                }
+                pos += 4 + 2L * (len + (len & 1));
+                count++;
+            }
+            return count;
+        } finally {
+            for (DataOutputStream out : outs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    private static void assemble(Path target, ByteBuffer key, Path[] parts, Path data,
+                                 long count) throws IOException
+    {
+        long blocks = Math.max(1, (count * BITS_PER_KEY + BLOCK_BYTES * 8 - 1)
+                / (BLOCK_BYTES * 8));
+        if (blocks * BLOCK_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("too many lines: " + count);
+        }
+        long radixPos = HEADER_SIZE + key.capacity();
+        long bloomPos = radixPos + (RADIX + 1) * 8L;
+        long fpsPos = bloomPos + blocks * BLOCK_BYTES;
+        long offsPos = fpsPos + count * 8;
+        long dataPos = offsPos + count * 8;
+        long[] radix = new long[RADIX + 1];
+
+        try (FileChannel ch = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer bloom = ch.map(FileChannel.MapMode.READ_WRITE, bloomPos,
+                    blocks * BLOCK_BYTES);
+            long written = 0;
+            for (Path part : parts) {
+                int n = (int) (Files.size(part) / 16);
+                long[] fps = new long[n];
+                long[] offs = new long[n];
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(part), BUFFER_SIZE))) {
+                    for (int i = 0; i < n; i++) {
+                        fps[i] = in.readLong();
+                        offs[i] = in.readLong();
+                    }
+                }
+                Files.delete(part);
+                sort(fps, offs, 0, n - 1);
+                for (int i = 0; i < n; i++) {
+                    radix[(int) (fps[i] >>> (64 - RADIX_BITS)) + 1]++;
+                    setBloom(bloom, fps[i], blocks);
+                }
+                writeLongs(ch, fpsPos + written * 8, fps, n);
+                writeLongs(ch, offsPos + written * 8, offs, n);
+                written += n;
+            }
+            bloom.force();
+            for (int i = 0; i < RADIX; i++) {
+                radix[i + 1] += radix[i];
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(blocks)
+                  .putLong(bloomPos).putLong(fpsPos).putLong(offsPos).putLong(dataPos)
+                  .putLong(radixPos);
+            header.clear();
+            write(ch, header, 0);
+            write(ch, key, HEADER_SIZE);
+            writeLongs(ch, radixPos, radix, radix.length);
+
+            try (FileChannel text = FileChannel.open(data, StandardOpenOption.READ)) {
+                long size = text.size();
+                long pos = 0;
+                while (pos < size) {
+                    pos += ch.transferFrom(text.position(pos), dataPos + pos, size - pos);
+                }
+            }
+        }
+    }
+
+    private static void setBloom(ByteBuffer bloom, long fp, long blocks)
+    {
+        int block = (int) (blockOf(fp, blocks) * BLOCK_BYTES);
+        long g = Fingerprints.mix(fp);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (g >>> (9 * i)) & 511;
+            int index = block + (bit >>> 6) * 8;
+            bloom.putLong(index, bloom.getLong(index) | (1L << bit));
+        }
+    }
+
+    private static void writeLongs(FileChannel ch, long position, long[] values, int n)
+            throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        int i = 0;
+        while (i < n) {
+            buf.clear();
+            while (i < n && buf.remaining() >= 8) {
+                buf.putLong(values[i++]);
+            }
+            buf.flip();
+            int len = buf.remaining();
+            write(ch, buf, position);
+            position += len;
+        }
+    }
+
+    private static void write(FileChannel ch, ByteBuffer buf, long position) throws IOException
+    {
+        while (buf.hasRemaining()) {
+            position += ch.write(buf, position);
+        }
+    }
+
+    /** 按指纹排序，原文位置随之移动。 */
+    private static void sort(long[] fps, long[] offs, int lo, int hi)
+    {
+        while (hi - lo > 16) {
+            long pivot = fps[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (fps[i] < pivot) {
+                    i++;
+                }
+                while (fps[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(fps, offs, i++, j--);
+                }
+            }
+            // 先递归较小的一半，栈深度不超过 log n
+            if (j - lo < hi - i) {
+                sort(fps, offs, lo, j);
+                lo = i;
+            } else {
+                sort(fps, offs, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && fps[j - 1] > fps[j]; j--) {
+                swap(fps, offs, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] fps, long[] offs, int i, int j)
+    {
+        long f = fps[i];
+        fps[i] = fps[j];
+        fps[j] = f;
+        long o = offs[i];
+        offs[i] = offs[j];
+        offs[j] = o;
+    }
+}
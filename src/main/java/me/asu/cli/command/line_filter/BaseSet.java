@@ -0,0 +1,30 @@
+package me.asu.cli.command.line_filter;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 比对文件中的行集合，可以由多个比对文件合成。
+ */
+interface BaseSet extends Closeable
+{
+
+    boolean contains(CharSequence key);
+
+    /**
+     * 包含 key 的比对文件，第 i 位对应第 i 个比对文件。
+     */
+    default int lookup(CharSequence key)
+    {
+        return contains(key) ? 1 : 0;
+    }
+
+    /** 比对文件的行数。 */
+    long size();
+
+    @Override
+    default void close() throws IOException
+    {
+        // nothing to do
+    }
+}
@@ -0,0 +1,175 @@
+package me.asu.cli.command.line_filter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import me.asu.cli.command.util.ColumnExtractor;
+import me.asu.cli.command.util.OrderedExecutor;
+import me.asu.cli.command.util.OutputSink;
+
+/**
+ * 并行分类。
+ * <p>
+ * 输入按字节读成块，在最后一个行结束符处切开（\n，或者后面还有字节的 \r，
+ * 块末尾的 \r 留到下一块，不会把 \r\n 拆开）；各线程分别解码、取列、查比对集合，
+ * 把各类行写进自己的缓冲区，再按块的顺序写回，输出与逐行处理完全相同。
+ * <p>
+ * 只适用于换行符编码成单字节，且该字节不会出现在多字节字符中间的字符集，如 UTF-8、GBK。
+ */
+class ChunkClassifier
+{
+
+    private static final int CHUNK_SIZE = 1 << 22;
+
+    private final BaseSet         base;
+    private final ColumnExtractor extractor;
+    private final Charset         charset;
+    private final FilterOp        op;
+    private final int             full;
+    private final int             threads;
+    private       long[]          counts;
+    private       long            lines;
+
+    ChunkClassifier(BaseSet base, ColumnExtractor extractor, Charset charset, FilterOp op,
+                    int bases, int threads)
+    {
+        this.base = base;
+        this.extractor = extractor;
+        this.charset = charset;
+        this.op = op;
+        this.full = (1 << bases) - 1;
+        this.threads = threads;
+    }
+
+    static boolean supports(Charset charset)
+    {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        byte[] lf = "\n".getBytes(charset);
+        byte[] cr = "\r".getBytes(charset);
+        return lf.length == 1 && lf[0] == '\n' && cr.length == 1 && cr[0] == '\r';
+    }
+
+    /**
+     * @param sinks 各个输出，0 号是 .not-in
+     * @return 各个输出的行数
+     */
+    long[] classify(Path input, OutputSink[] sinks) throws IOException
+    {
+        counts = new long[sinks.length];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        OrderedExecutor<Chunk> executor = new OrderedExecutor<>(pool, threads * 2, chunk -> {
+            for (int i = 0; i < sinks.length; i++) {
+                sinks[i].append(chunk.outputs[i]);
+                counts[i] += chunk.counts[i];
+            }
+            lines += chunk.lines;
+        });
+        try (InputStream stream = Files.newInputStream(input)) {
+            byte[] buf = new byte[CHUNK_SIZE];
+            int len = 0;
+            int n;
+            while ((n = stream.read(buf, len, buf.length - len)) >= 0) {
+                len += n;
+                if (len < buf.length) {
+                    continue;
+                }
+                int cut = lastLineBreak(buf, len) + 1;
+                if (cut == 0) {
+                    // 一块里没有行结束符，加大块继续读
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    continue;
+                }
+                byte[] next = new byte[Math.max(CHUNK_SIZE, (len - cut) * 2)];
+                System.arraycopy(buf, cut, next, 0, len - cut);
+                submit(executor, buf, cut);
+                buf = next;
+                len -= cut;
+            }
+            if (len > 0) {
+                submit(executor, buf, len);
+            }
+            executor.finish();
+            return counts;
+        } catch (IOException | RuntimeException e) {
+            executor.cancel();
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void submit(OrderedExecutor<Chunk> executor, byte[] bytes, int len)
+            throws IOException
+    {
+        executor.submit(() -> classify(bytes, len));
+    }
+
+    /** 上次 {@link #classify} 读入的行数。 */
+    long getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * 最后一个可以切开的行结束符的位置。末尾的 \r 后面可能是下一块开头的 \n，不在这里切。
+     */
+    static int lastLineBreak(byte[] buf, int len)
+    {
+        for (int i = len - 1; i >= 0; i--) {
+            if (buf[i] == '\n' || (buf[i] == '\r' && i < len - 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** 按 {@link java.io.BufferedReader#readLine()} 的规则分行：\n、\r 或 \r\n。 */
+    private Chunk classify(byte[] bytes, int len) throws IOException
+    {
+        String text = charset.newDecoder().decode(ByteBuffer.wrap(bytes, 0, len)).toString();
+        Chunk chunk = new Chunk(counts.length, text.length());
+        int end = text.length();
+        int start = 0;
+        while (start < end) {
+            int i = start;
+            char ch = 0;
+            while (i < end && (ch = text.charAt(i)) != '\n' && ch != '\r') {
+                i++;
+            }
+            String line = text.substring(start, i);
+            int targets = op.targets(base.lookup(extractor.extract(line)), full);
+            FilterOp.route(line, targets, chunk.outputs, chunk.counts);
+            chunk.lines++;
+            start = i + 1;
+            if (ch == '\r' && start < end && text.charAt(start) == '\n') {
+                start++;
+            }
+        }
+        return chunk;
+    }
+
+    private static class Chunk
+    {
+
+        final StringBuilder[] outputs;
+        final long[]          counts;
+        long                  lines;
+
+        Chunk(int n, int chars)
+        {
+            outputs = new StringBuilder[n];
+            for (int i = 0; i < n; i++) {
+                outputs[i] = new StringBuilder(chars / n + 16);
+            }
+            counts = new long[n];
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package me.asu.cli.command.line_filter;
+
+import java.io.IOException;
+import me.asu.cli.command.util.OutputSink;
+
+/**
+ * 多个比对文件时的集合运算。
+ * <p>
+ * 比对结果是一个位掩码，第 i 位表示第 i 个比对文件包含该行的列；
+ * {@link #targets} 把它换成输出掩码，第 0 位是不在的行（.not-in），其余各位依次是在的行的输出。
+ */
+enum FilterOp
+{
+    /** 在任一比对文件中（并集）。 */
+    ANY,
+    /** 在所有比对文件中（交集）。 */
+    ALL,
+    /** 在第一个比对文件中，且不在其余比对文件中（差集）。 */
+    SUB,
+    /** 按比对文件分别输出，一行可以出现在多个输出中。 */
+    EACH;
+
+    static FilterOp of(String name)
+    {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /** 除 .not-in 外的输出个数。 */
+    int outputs(int bases)
+    {
+        return this == EACH ? bases : 1;
+    }
+
+    /**
+     * @param mask 比对结果
+     * @param full 所有比对文件都包含时的掩码
+     */
+    int targets(int mask, int full)
+    {
+        boolean in;
+        switch (this) {
+            case ALL:
+                in = mask == full;
+                break;
+            case SUB:
+                in = mask == 1;
+                break;
+            case EACH:
+                return mask == 0 ? 1 : mask << 1;
+            default:
+                in = mask != 0;
+                break;
+        }
+        return in ? 2 : 1;
+    }
+
+    /** 把一行写到输出掩码指定的各个输出，并计数。 */
+    static void route(String line, int targets, Appendable[] outputs, long[] counts)
+            throws IOException
+    {
+        for (int i = 0; targets != 0; i++, targets >>>= 1) {
+            if ((targets & 1) != 0) {
+                outputs[i].append(line).append(OutputSink.LINE_SEPARATOR);
+                counts[i]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package me.asu.cli.command.line_filter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把比对文件全部读进一个 {@link HashMap}，值是包含该行的比对文件掩码。
+ */
+class HashBaseSet implements BaseSet
+{
+
+    private final Map<String, Integer> masks;
+    private final long                 size;
+
+    HashBaseSet(List<List<String>> bases)
+    {
+        long total = 0;
+        for (List<String> lines : bases) {
+            total += lines.size();
+        }
+        this.masks = new HashMap<>((int) Math.min(total * 4 / 3 + 1, 1 << 30));
+        this.size = total;
+        for (int i = 0; i < bases.size(); i++) {
+            Integer bit = 1 << i;
+            for (String line : bases.get(i)) {
+                masks.merge(line, bit, (a, b) -> a | b);
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(CharSequence key)
+    {
+        return masks.containsKey(key.toString());
+    }
+
+    @Override
+    public int lookup(CharSequence key)
+    {
+        Integer mask = masks.get(key.toString());
+        return mask == null ? 0 : mask;
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+}
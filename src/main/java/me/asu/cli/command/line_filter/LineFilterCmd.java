@@ -15,27 +15,31 @@
  */
 package me.asu.cli.command.line_filter;
 
-import java.io.BufferedWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Stream;
 import lombok.Data;
+import me.asu.cli.command.util.ColumnExtractor;
+import me.asu.cli.command.util.CommandOptions;
+import me.asu.cli.command.util.OutputSink;
 import me.asu.cli.command.util.ResourcesFiles;
+import me.asu.cli.command.util.RunStats;
 import me.asu.tui.framework.api.CliCommand;
 import me.asu.tui.framework.api.CliConsole;
 import me.asu.tui.framework.api.CliContext;
 import me.asu.tui.framework.util.CliArguments;
 import me.asu.tui.framework.util.CliCmdLineOption;
 import me.asu.tui.framework.util.CliCmdLineParser;
-import me.asu.util.Strings;
 
 /**
  * 按行过滤文本
@@ -46,6 +50,8 @@ public class LineFilterCmd implements CliCommand
     private static final String     NAMESPACE  = "asu";
     private static final String     CMD_NAME   = "line-filter";
     private static final Descriptor DESCRIPTOR = new InnerDescriptor();
+    /** 比对结果用 int 掩码表示。 */
+    private static final int        MAX_BASES  = 31;
 
     @Override
     public Descriptor getDescriptor()
@@ -72,95 +78,200 @@ public class LineFilterCmd implements CliCommand
 
         String delimiter = arguments.getParam("d");
         Charset encoding = getEncoding(arguments);
+        List<String> baseFiles = getBaseFiles(arguments);
+        if (baseFiles.isEmpty() || baseFiles.size() > MAX_BASES) {
+            c.printf("比对文件个数应为 1 到 %d。%n", MAX_BASES);
+            return null;
+        }
+        FilterOp op;
+        try {
+            op = getOp(arguments);
+        } catch (IllegalArgumentException e) {
+            DESCRIPTOR.printUsage(c);
+            return null;
+        }
 
         Path inputPath = getInputputPath(arguments);
-        Path outputPathIn = Paths.get(inputPath.toString() + ".in");
-        Path outputPathNotIn = Paths.get(inputPath.toString() + ".not-in");
-        Set<String> baseSet = loadBaseSet(arguments);
+        Path[] outputs = getOutputPaths(inputPath, op, baseFiles);
 
         int column = getColumn(arguments);
+        int threads = CommandOptions.getThreads(arguments);
+        if (threads > 1 && !ChunkClassifier.supports(encoding)) {
+            c.printf("字符编码 %s 不支持并行分类，改为单线程。%n", encoding);
+            threads = 1;
+        }
 
         c.printf("处理文件： %s%n", inputPath);
         c.printf("字符编码： %s%n", encoding);
         c.printf("行分隔符： %s%n", delimiter);
         c.printf("行： %d%n", column);
-
-        c.printf("%n");
+        c.printf("线程数： %d%n", threads);
+        if (baseFiles.size() > 1) {
+            c.printf("比对方式： %s%n", op.name().toLowerCase());
+        }
         c.flush();
 
-        List<String> in = new LinkedList<String>();
-        List<String> notIn = new LinkedList<String>();
-
-        try (Stream<String> lines = Files.lines(inputPath, encoding);) {
-            lines.forEach(line -> {
-                String s = pickUpWord(line, column, delimiter);
-                if (baseSet.contains(s)) {
-                    in.add(line);
+        try (RunStats stats = RunStats.start(CMD_NAME, arguments)) {
+            long start = System.currentTimeMillis();
+            BaseSet baseSet;
+            try (RunStats.Phase p = stats.phase(RunStats.PHASE_LOAD)) {
+                baseSet = loadBaseSet(c, arguments, baseFiles);
+            } catch (IOException e) {
+                e.printStackTrace();
+                c.printf("加载比对文件失败。%n");
+                return null;
+            }
+            c.printf("比对文件： %d 行，加载耗时 %d ms%n", baseSet.size(),
+                    System.currentTimeMillis() - start);
+
+            c.printf("%n");
+            c.flush();
+
+            ColumnExtractor extractor = ColumnExtractor.of(delimiter, column);
+            int full = (1 << baseFiles.size()) - 1;
+            long[] counts = new long[outputs.length];
+            OutputSink[] sinks = new OutputSink[outputs.length];
+            try (BaseSet base = baseSet;
+                 RunStats.Phase p = stats.phase(RunStats.PHASE_PROCESS)) {
+                // 分类和写出交错进行，写出的用时也在这个阶段里
+                for (int i = 0; i < outputs.length; i++) {
+                    sinks[i] = new OutputSink(outputs[i], StandardCharsets.UTF_8);
+                }
+                if (threads > 1) {
+                    ChunkClassifier classifier = new ChunkClassifier(base, extractor, encoding, op,
+                            baseFiles.size(), threads);
+                    counts = classifier.classify(inputPath, sinks);
+                    stats.addLines(classifier.getLines());
                 } else {
-                    notIn.add(line);
+                    long lines = 0;
+                    try (BufferedReader reader = Files.newBufferedReader(inputPath, encoding)) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            int targets = op.targets(base.lookup(extractor.extract(line)), full);
+                            FilterOp.route(line, targets, sinks, counts);
+                            lines++;
+                        }
+                    }
+                    stats.addLines(lines);
                 }
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        c.printf("过滤出%d个字词，清理了%d个字词。%n", in.size(), notIn.size());
-        c.printf("保存过滤出字词文件到：%s%n", outputPathIn);
-        c.printf("保存清理字词文件到：%s%n", outputPathNotIn);
-
-        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(outputPathIn)) {
-            in.forEach(w -> write(bufferedWriter, w));
-            bufferedWriter.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                close(sinks);
+            }
+            stats.addBytesRead(inputPath);
+            for (Path output : outputs) {
+                stats.addBytesWritten(output);
+            }
+            if (op == FilterOp.EACH) {
+                for (int i = 1; i < outputs.length; i++) {
+                    c.printf("在 %s 中的%d个字词保存到：%s%n", baseFiles.get(i - 1), counts[i],
+                            outputs[i]);
+                }
+                c.printf("不在比对文件中的%d个字词保存到：%s%n", counts[0], outputs[0]);
+                stats.report(c);
+                return 0;
+            }
+            c.printf("过滤出%d个字词，清理了%d个字词。%n", counts[1], counts[0]);
+            c.printf("保存过滤出字词文件到：%s%n", outputs[1]);
+            c.printf("保存清理字词文件到：%s%n", outputs[0]);
+            stats.report(c);
+            return 0;
         }
+    }
 
-        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(outputPathNotIn)) {
-            notIn.forEach(w -> write(bufferedWriter, w));
-            bufferedWriter.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void close(OutputSink[] sinks)
+    {
+        for (OutputSink sink : sinks) {
+            if (sink == null) {
+                continue;
+            }
+            try {
+                sink.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
-        return 0;
     }
 
-    String pickUpWord(String w, int columnIndex, String splitter)
+    /**
+     * 0 号是 .not-in；并集、交集、差集只有一个 .in，分别输出时每个比对文件一个 .in.比对文件名。
+     */
+    private Path[] getOutputPaths(Path inputPath, FilterOp op, List<String> baseFiles)
     {
-        if (Strings.isBlank(w)) {
-            return "";
-        }
-        if (Strings.isBlank(splitter)) {
-            return w;
-        }
-        splitter = splitter.trim();
-        w = w.trim();
-        String[] split = w.split(splitter);
-        if (columnIndex >= split.length) {
-            columnIndex = split.length - 1;
+        Path[] paths = new Path[op.outputs(baseFiles.size()) + 1];
+        paths[0] = Paths.get(inputPath + ".not-in");
+        if (op != FilterOp.EACH) {
+            paths[1] = Paths.get(inputPath + ".in");
+            return paths;
         }
-        if (columnIndex < 0) {
-            columnIndex = 0;
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < baseFiles.size(); i++) {
+            String name = Paths.get(baseFiles.get(i)).getFileName().toString();
+            if (!used.add(name)) {
+                name = name + "-" + (i + 1);
+            }
+            paths[i + 1] = Paths.get(inputPath + ".in." + name);
         }
-        return split[columnIndex];
+        return paths;
+    }
+
+    String pickUpWord(String w, int columnIndex, String splitter)
+    {
+        return ColumnExtractor.of(splitter, columnIndex).extractString(w);
     }
 
-    private Set<String> loadBaseSet(CliArguments arguments)
+    /**
+     * 散列模式把所有比对文件读进同一个表；索引模式各比对文件分别建立和缓存索引，查询时合并结果。
+     */
+    private BaseSet loadBaseSet(CliConsole c, CliArguments arguments, List<String> baseFiles)
+            throws IOException
     {
         Charset encoding = getEncoding(arguments);
         Charset baseFileEncoding = getBaseEncoding(arguments, encoding);
 
-        String baseFile = arguments.getParam("b");
-        return new HashSet<>(
-                ResourcesFiles.readLinesInResources(baseFile, baseFileEncoding.name()));
+        if (arguments.hasParam("i")) {
+            List<BaseIndex> indexes = new ArrayList<>();
+            try {
+                for (String baseFile : baseFiles) {
+                    File file = ResourcesFiles.locate(baseFile);
+                    if (file == null) {
+                        throw new FileNotFoundException(baseFile);
+                    }
+                    BaseIndex index = BaseIndex.load(file.toPath(), baseFileEncoding);
+                    indexes.add(index);
+                    c.printf("%s索引： %s%n", index.isReused() ? "使用" : "建立", index.getPath());
+                }
+            } catch (IOException | RuntimeException e) {
+                new MultiBaseSet(indexes).close();
+                throw e;
+            }
+            return indexes.size() == 1 ? indexes.get(0) : new MultiBaseSet(indexes);
+        }
+        List<List<String>> bases = new ArrayList<>();
+        for (String baseFile : baseFiles) {
+            bases.add(ResourcesFiles.readLinesInResources(baseFile, baseFileEncoding.name()));
+        }
+        return new HashBaseSet(bases);
     }
 
-    private void write(BufferedWriter bufferedWriter, String w)
+    private List<String> getBaseFiles(CliArguments arguments)
     {
-        try {
-            bufferedWriter.write(w);
-            bufferedWriter.write(System.getProperty("line.separator"));
-        } catch (IOException e) {
-            e.printStackTrace();
+        List<String> files = new ArrayList<>();
+        for (String name : arguments.getParam("b").split(",")) {
+            if (!name.trim().isEmpty()) {
+                files.add(name.trim());
+            }
         }
+        return files;
+    }
+
+    private FilterOp getOp(CliArguments arguments)
+    {
+        if (arguments.hasParam("op")) {
+            return FilterOp.of(arguments.getParam("op"));
+        }
+        return FilterOp.ANY;
     }
 
     private int getColumn(CliArguments arguments)
@@ -251,7 +362,7 @@ public class LineFilterCmd implements CliCommand
             CliCmdLineOption opt5 = CliCmdLineOption.builder()
                                                     .shortName("b")
                                                     .hasArg(true)
-                                                    .description("比对文件。")
+                                                    .description("比对文件，多个文件用逗号分隔。")
                                                     .build();
             CliCmdLineOption opt6 = CliCmdLineOption.builder()
                                                     .shortName("be")
@@ -259,7 +370,26 @@ public class LineFilterCmd implements CliCommand
                                                     .description("比对文件字符编码。")
                                                     .build();
 
-            parser.addOption(opt1, opt2, opt3, opt4, opt5, opt6);
+            CliCmdLineOption opt7 = CliCmdLineOption.builder()
+                                                    .shortName("i")
+                                                    .longName("index")
+                                                    .description("为比对文件建立布隆过滤器和磁盘索引，映射到内存查询，适合很大的比对文件。索引保存在比对文件旁边，比对文件不变时直接使用。")
+                                                    .build();
+
+            CliCmdLineOption opt8 = CliCmdLineOption.builder()
+                                                    .shortName("j")
+                                                    .longName("jobs")
+                                                    .hasArg(true)
+                                                    .description("并行分类的线程数，默认为 1。输入按行切块，结果按原顺序写出。")
+                                                    .build();
+
+            CliCmdLineOption opt9 = CliCmdLineOption.builder()
+                                                    .shortName("op")
+                                                    .hasArg(true)
+                                                    .description("多个比对文件时的比对方式：any 在任一文件中（默认），all 在所有文件中，sub 在第一个文件中且不在其余文件中，each 按比对文件分别输出到 .in.比对文件名。")
+                                                    .build();
+
+            parser.addOption(opt1, opt2, opt3, opt4, opt5, opt6, opt7, opt8, opt9, RunStats.option());
         }
 
         @Override
@@ -0,0 +1,67 @@
+package me.asu.cli.command.line_filter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 把多个比对集合合成一个，逐个查询。用于索引模式，各比对文件的索引分别缓存。
+ */
+class MultiBaseSet implements BaseSet
+{
+
+    private final BaseSet[] bases;
+
+    MultiBaseSet(List<? extends BaseSet> bases)
+    {
+        this.bases = bases.toArray(new BaseSet[0]);
+    }
+
+    @Override
+    public boolean contains(CharSequence key)
+    {
+        for (BaseSet base : bases) {
+            if (base.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int lookup(CharSequence key)
+    {
+        int mask = 0;
+        for (int i = 0; i < bases.length; i++) {
+            if (bases[i].contains(key)) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public long size()
+    {
+        long size = 0;
+        for (BaseSet base : bases) {
+            size += base.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        IOException error = null;
+        for (BaseSet base : bases) {
+            try {
+                base.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package me.asu.cli.command.pipeline;
+
+import java.io.IOException;
+import me.asu.cli.command.util.LineConsumer;
+import me.asu.tui.framework.api.CliConsole;
+
+/**
+ * 流水线中的一个阶段：逐行处理上一阶段的输出，结果交给下一阶段。
+ * <p>
+ * 每个阶段在自己的线程上运行，同一个实例的方法只在这个线程里调用。
+ * 需要看到全部输入才能输出的阶段（如排序）在 {@link #finish} 里输出。
+ */
+public interface LineStage {
+
+    void accept(String line, LineConsumer out) throws IOException;
+
+    /** 输入结束。 */
+    default void finish(LineConsumer out) throws IOException {
+    }
+
+    /** 释放资源，出错时也会调用。 */
+    default void close() throws IOException {
+    }
+
+    /** 按命令参数创建阶段，参数不对时抛出 {@link IllegalArgumentException}。 */
+    @FunctionalInterface
+    interface Factory {
+
+        LineStage create(CliConsole c, String[] args);
+    }
+}
@@ -0,0 +1,291 @@
+package me.asu.cli.command.pipeline;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import me.asu.cli.command.util.LineConsumer;
+import me.asu.cli.command.util.RunStats;
+
+/**
+ * 在一个进程里串联多个 {@link LineStage}，各阶段之间不写中间文件。
+ * <p>
+ * 读入和每个阶段各占一个线程，相邻两个线程之间是一个有界队列。行按批传递，
+ * 下游处理不过来时上游在 {@code put} 上等待，内存占用不超过队列容量。
+ * 最后一个阶段的输出直接交给调用方，只有它写磁盘。
+ * <p>
+ * 任何一个线程出错时中断其余线程，错误从 {@link #run} 抛出。
+ */
+public class Pipeline implements Closeable {
+
+    /** 每批的行数。 */
+    public static final int BATCH_SIZE     = 512;
+    /** 每个队列最多缓存的批数。 */
+    public static final int QUEUE_CAPACITY = 16;
+
+    /** 输入结束的标记，按引用比较。 */
+    private static final List<String> END = new ArrayList<>(0);
+
+    private final List<String>    names  = new ArrayList<>();
+    private final List<LineStage> stages = new ArrayList<>();
+    private final RunStats        stats;
+    private       boolean         started;
+
+    /**
+     * @param stats 各阶段的处理用时计入同名的统计阶段，为 null 时不统计
+     */
+    public Pipeline(RunStats stats) {
+        this.stats = stats;
+    }
+
+    public Pipeline add(String name, LineStage stage) {
+        names.add(name);
+        stages.add(stage);
+        return this;
+    }
+
+    public int size() {
+        return stages.size();
+    }
+
+    /**
+     * 读入文件，依次经过各阶段，最后一个阶段的输出交给 output。
+     * output 只在最后一个阶段的线程里调用，返回或抛出异常时所有线程都已结束。
+     *
+     * @return 读入的行数
+     */
+    public long run(Path input, Charset encoding, LineConsumer output) throws IOException {
+        int n = stages.size();
+        if (n == 0) {
+            throw new IllegalStateException("流水线没有阶段");
+        }
+        if (started) {
+            throw new IllegalStateException("流水线只能运行一次");
+        }
+        started = true;
+        List<BlockingQueue<List<String>>> queues = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            queues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        }
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(n + 1, r -> {
+            Thread t = new Thread(r, "pipeline-" + threadId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Void> tasks = new ExecutorCompletionService<>(pool);
+        AtomicLong lines = new AtomicLong();
+        tasks.submit(() -> {
+            read(input, encoding, new Batcher(queues.get(0)), lines);
+            return null;
+        });
+        for (int i = 0; i < n; i++) {
+            final int index = i;
+            final Batcher next = i + 1 < n ? new Batcher(queues.get(i + 1)) : null;
+            tasks.submit(() -> {
+                runStage(index, queues.get(index), next != null ? next : guard(output), next);
+                return null;
+            });
+        }
+        try {
+            for (int i = 0; i <= n; i++) {
+                tasks.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("流水线被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+            awaitTermination(pool);
+        }
+        return lines.get();
+    }
+
+    /**
+     * 释放没有运行的阶段，用于 {@link #run} 之前出错的情况；运行过的阶段已在各自线程里释放。
+     */
+    @Override
+    public void close() throws IOException {
+        if (started) {
+            return;
+        }
+        started = true;
+        IOException error = null;
+        for (LineStage stage : stages) {
+            try {
+                stage.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void read(Path input, Charset encoding, Batcher out, AtomicLong lines)
+            throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input, encoding)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.accept(line);
+                lines.incrementAndGet();
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * @param next 下一阶段的入口，最后一个阶段为 null
+     */
+    private void runStage(int index, BlockingQueue<List<String>> in, LineConsumer out,
+                          Batcher next) throws IOException {
+        LineStage stage = stages.get(index);
+        String phase = (index + 1) + ":" + names.get(index);
+        try {
+            while (true) {
+                List<String> batch = take(in);
+                if (batch == END) {
+                    break;
+                }
+                // 只收不发的阶段（如排序）不会在 put 上响应中断，每批检查一次
+                checkInterrupted();
+                try (RunStats.Phase p = phase(phase)) {
+                    for (String line : batch) {
+                        stage.accept(line, out);
+                    }
+                }
+            }
+            try (RunStats.Phase p = phase(phase)) {
+                stage.finish(out);
+            }
+            if (next != null) {
+                next.close();
+            }
+        } finally {
+            stage.close();
+        }
+    }
+
+    private RunStats.Phase phase(String name) {
+        return stats == null ? null : stats.phase(name);
+    }
+
+    private static List<String> take(BlockingQueue<List<String>> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("流水线被中断");
+        }
+    }
+
+    /**
+     * 最后一个阶段调用 output 之前检查中断，出错后不再写输出，
+     * 不响应中断的 {@code finish}（如归并临时分段）也能尽快结束。
+     */
+    private static LineConsumer guard(LineConsumer output) {
+        return line -> {
+            checkInterrupted();
+            output.accept(line);
+        };
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("流水线被中断");
+        }
+    }
+
+    /**
+     * 等所有线程真正结束，调用方之后才能关闭 output。
+     */
+    private static void awaitTermination(ExecutorService pool) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 把行攒成批放进下一阶段的队列。 */
+    private static class Batcher implements LineConsumer {
+
+        private final BlockingQueue<List<String>> queue;
+        private       List<String>                batch = new ArrayList<>(BATCH_SIZE);
+
+        Batcher(BlockingQueue<List<String>> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void accept(String line) throws IOException {
+            batch.add(line);
+            if (batch.size() == BATCH_SIZE) {
+                put(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        /** 送出剩下的行和结束标记。 */
+        void close() throws IOException {
+            if (!batch.isEmpty()) {
+                put(batch);
+            }
+            batch = null;
+            put(END);
+        }
+
+        private void put(List<String> b) throws IOException {
+            try {
+                queue.put(b);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("流水线被中断");
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package me.asu.cli.command.pipeline;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import me.asu.cli.command.cnsort.ChineseSortCmd;
+import me.asu.cli.command.sp.FullPyToSpCmd;
+import me.asu.cli.command.syllables_to_four.SyllablesToFourCmd;
+import me.asu.cli.command.unique.LineUniqueCmd;
+import me.asu.cli.command.util.OutputSink;
+import me.asu.cli.command.util.RunStats;
+import me.asu.tui.framework.api.CliCommand;
+import me.asu.tui.framework.api.CliConsole;
+import me.asu.tui.framework.api.CliContext;
+import me.asu.tui.framework.util.CliArguments;
+import me.asu.tui.framework.util.CliCmdLineOption;
+import me.asu.tui.framework.util.CliCmdLineParser;
+
+/**
+ * 在一个进程里串联多个命令，命令之间通过内存中的有界队列传递行，不写中间文件。
+ * <p>
+ * 例如 {@code pipeline -s "full2sp-he | syllables-to-four | line-unique | cn-sort -p" words.txt}
+ * 与依次运行这四个命令的结果相同，但只读一次输入、写一次输出。
+ */
+public class PipelineCmd implements CliCommand {
+
+    private static final String     NAMESPACE  = "asu";
+    private static final String     CMD_NAME   = "pipeline";
+
+    /** 可以放进流水线的命令。 */
+    private static final Map<String, LineStage.Factory> STAGES = new LinkedHashMap<>();
+
+    static {
+        STAGES.put("full2sp-he", (c, args) -> new FullPyToSpCmd().newStage(c, args));
+        STAGES.put("syllables-to-four", (c, args) -> new SyllablesToFourCmd().newStage(c, args));
+        STAGES.put("line-unique", (c, args) -> new LineUniqueCmd().newStage(c, args));
+        STAGES.put("cn-sort", (c, args) -> new ChineseSortCmd().newStage(c, args));
+    }
+
+    /** 描述里列出可用的命令，在 STAGES 之后初始化。 */
+    private static final Descriptor DESCRIPTOR = new InnerDescriptor();
+
+    @Override
+    public Descriptor getDescriptor() {
+        return DESCRIPTOR;
+    }
+
+    @Override
+    public Object execute(CliContext ctx, String[] args) {
+        CliConsole c = ctx.getCliConsole();
+
+        CliArguments arguments;
+        try {
+            arguments = DESCRIPTOR.parse(args);
+        } catch (Exception e) {
+            DESCRIPTOR.printUsage(c);
+            return 1;
+        }
+        if (arguments.hasParam("h") || !arguments.hasParam("s") || !arguments.hasRemain()) {
+            DESCRIPTOR.printUsage(c);
+            return 1;
+        }
+
+        try (RunStats stats = RunStats.start(CMD_NAME, arguments)) {
+            Pipeline pipeline = new Pipeline(stats);
+            try (RunStats.Phase p = stats.phase(RunStats.PHASE_LOAD)) {
+                if (!addStages(c, pipeline, arguments.getParam("s"))) {
+                    close(pipeline);
+                    return 1;
+                }
+            }
+            Path inputPath = Paths.get(arguments.getRemain().get(0)).toAbsolutePath();
+            Path outputPath = getOutputPath(arguments, inputPath);
+            Charset encoding = getEncoding(arguments);
+
+            c.printf("处理文件： %s%n", inputPath);
+            c.printf("字符编码： %s%n", encoding);
+            c.printf("流水线： %s%n", arguments.getParam("s"));
+            c.printf("输出文件： %s%n", outputPath);
+            c.printf("%n");
+            c.flush();
+
+            long lines = -1;
+            try (OutputSink sink = new OutputSink(outputPath, StandardCharsets.UTF_8);
+                 RunStats.Phase p = stats.phase(RunStats.PHASE_PROCESS)) {
+                // run 返回或抛出异常时各阶段线程都已结束，之后才关闭 sink
+                lines = pipeline.run(inputPath, encoding, sink::writeLine);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                lines = -1;
+            }
+            stats.addBytesRead(inputPath);
+            if (lines < 0) {
+                deleteOutput(c, outputPath);
+                stats.report(c);
+                return 1;
+            }
+            stats.addLines(lines);
+            stats.addBytesWritten(outputPath);
+            c.printf("处理了%d行。%n", lines);
+            c.printf("保存到： %s%n", outputPath);
+            stats.report(c);
+            return 0;
+        }
+    }
+
+    /** 流水线出错时输出不完整，删除，避免被当成结果使用。 */
+    private void deleteOutput(CliConsole c, Path outputPath) {
+        try {
+            Files.deleteIfExists(outputPath);
+            c.printf("流水线出错，已删除不完整的输出：%s%n", outputPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            c.printf("流水线出错，输出不完整：%s%n", outputPath);
+        }
+    }
+
+    /**
+     * 出错时已经创建的阶段由调用方通过 {@link Pipeline#close()} 释放。
+     * <p>
+     * 阶段之间用 | 分隔，每个阶段是命令名加参数，参数与单独运行命令时相同，不含文件名。
+     */
+    private boolean addStages(CliConsole c, Pipeline pipeline, String spec) {
+        for (String part : spec.split("\\|")) {
+            String[] words = part.trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                c.printf("流水线中有空的阶段：%s%n", spec);
+                return false;
+            }
+            LineStage.Factory factory = STAGES.get(words[0]);
+            if (factory == null) {
+                c.printf("不支持的命令：%s，可用的命令：%s%n", words[0], STAGES.keySet());
+                return false;
+            }
+            try {
+                pipeline.add(words[0], factory.create(c, Arrays.copyOfRange(words, 1, words.length)));
+            } catch (IllegalArgumentException e) {
+                c.printf("%s%n", e.getMessage());
+                return false;
+            } catch (RuntimeException e) {
+                c.printf("%s 创建失败：%s%n", words[0], e);
+                e.printStackTrace();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void close(Pipeline pipeline) {
+        try {
+            pipeline.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Charset getEncoding(CliArguments arguments) {
+        Charset encoding = StandardCharsets.UTF_8;
+        if (arguments.hasParam("e")) {
+            encoding = Charset.forName(arguments.getParam("e"));
+        }
+        return encoding;
+    }
+
+    private Path getOutputPath(CliArguments arguments, Path inputPath) {
+        Path outPath;
+        if (arguments.hasParam("o")) {
+            outPath = Paths.get(arguments.getParam("o")).toAbsolutePath();
+        } else {
+            outPath = Paths.get(inputPath.toString() + ".out");
+        }
+        if (!Files.exists(outPath.getParent())) {
+            try {
+                Files.createDirectories(outPath.getParent());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return outPath;
+    }
+
+    @Override
+    public void plug(CliContext plug) {
+        // nothing to do
+    }
+
+    @Override
+    public void unplug(CliContext plug) {
+        // nothing to do
+    }
+
+    static class InnerDescriptor implements Descriptor {
+
+        CliCmdLineParser parser = new CliCmdLineParser();
+
+        InnerDescriptor() {
+            CliCmdLineOption opt1 = CliCmdLineOption.builder().shortName("s").longName("stages").hasArg(true)
+                    .description("要串联的命令，用 | 分隔，整体加引号，如 \"full2sp-he | syllables-to-four | line-unique | cn-sort -p\"。\n"
+                            + "\t可用的命令：" + String.join(", ", STAGES.keySet())).build();
+            CliCmdLineOption opt2 = CliCmdLineOption.builder().shortName("e").longName("encoding").hasArg(true)
+                    .description("输入文件字符编码，默认为 UTF-8。").build();
+            CliCmdLineOption opt3 = CliCmdLineOption.builder().shortName("o").longName("output").hasArg(true)
+                    .description("输出文件，默认为输入文件加 .out。").build();
+            CliCmdLineOption opt4 = CliCmdLineOption.builder().shortName("h").longName("help")
+                    .description("打印帮助信息。").build();
+
+            parser.addOption(opt1, opt2, opt3, opt4, RunStats.option());
+        }
+
+        @Override
+        public String getNamespace() {
+            return NAMESPACE;
+        }
+
+        @Override
+        public String getName() {
+            return CMD_NAME;
+        }
+
+        @Override
+        public String getDescription() {
+            return "串联多个命令，不写中间文件";
+        }
+
+        @Override
+        public CliCmdLineParser getCliCmdLineParser() {
+            return parser;
+        }
+    }
+}
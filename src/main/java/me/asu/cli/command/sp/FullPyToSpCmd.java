@@ -15,7 +15,6 @@
  */
 package me.asu.cli.command.sp;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -25,6 +24,9 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
+import me.asu.cli.command.pipeline.LineStage;
+import me.asu.cli.command.util.OutputSink;
+import me.asu.cli.command.util.RunStats;
 import me.asu.tui.framework.api.*;
 import me.asu.tui.framework.util.CliArguments;
 import me.asu.tui.framework.util.CliCmdLineOption;
@@ -54,38 +56,42 @@ public class FullPyToSpCmd implements CliCommand {
             return 1;
         }
 
-        processInput(argumentsParser);
-        return 0;
+        try (RunStats stats = RunStats.start(CMD_NAME, argumentsParser.arguments)) {
+            processInput(argumentsParser, stats);
+            stats.addBytesRead(argumentsParser.getInputPath());
+            stats.addBytesWritten(argumentsParser.getOutputPath());
+            stats.report(c);
+            return 0;
+        }
     }
 
-    private void processInput(ArgumentsParser argumentsParser) {
+    private void processInput(ArgumentsParser argumentsParser, RunStats stats) {
+        ShuangpinTable table;
+        try (RunStats.Phase p = stats.phase(RunStats.PHASE_LOAD)) {
+            table = ShuangpinTable.HE;
+        }
+        ShuangpinConverter converter = new ShuangpinConverter(table, OutputSink.LINE_SEPARATOR);
         try (Stream<String> lines = Files.lines(argumentsParser.getInputPath(), argumentsParser.getEncoding());
-             BufferedWriter bufferedWriter = Files.newBufferedWriter(argumentsParser.getOutputPath())
+             OutputSink sink = new OutputSink(argumentsParser.getOutputPath(), StandardCharsets.UTF_8);
+             RunStats.Phase p = stats.phase(RunStats.PHASE_PROCESS)
         ) {
-            Map<String, String> table = makeTable();
             final AtomicInteger count = new AtomicInteger();
             lines.forEach(line -> {
                 count.incrementAndGet();
                 if(Strings.isBlank(line) || line.charAt(0) == '#') {
                     return;
                 }
-                List<String> mapping = new ArrayList<>(line.length());
-                String[] split = line.split("\\s+");
-                for (int i = 1; i < split.length; i++) {
-                    if (table.containsKey(split[i])) {
-                        mapping.add(table.get(split[i]));
-                    } else {
-                        System.out.println("split[i] is not exits:  " + split[i]);
-                    }
-                }
-                if (mapping.size() == split.length - 1) {
-                    write(bufferedWriter, mapping, split[0]);
+                if (converter.convert(line)) {
+                    write(sink, converter);
+                } else {
+                    reportMissing(argumentsParser.c, table, line);
                 }
                 if (count.get() % 1000 == 0) {
                     argumentsParser.c.printf("processing %d lines.%n", count.get());
                 }
             });
-            bufferedWriter.flush();
+            sink.flush();
+            stats.addLines(count.get());
             argumentsParser.c.printf("processing %d lines.%n", count.get());
             argumentsParser.c.printf("保存到： %s%n", argumentsParser.getOutputPath());
         } catch (IOException e) {
@@ -93,24 +99,47 @@ public class FullPyToSpCmd implements CliCommand {
         }
     }
 
-    private void write(BufferedWriter bufferedWriter, List<String> keys, String words) {
+    private void write(OutputSink sink, ShuangpinConverter converter) {
         try {
-            String text = String.format("%s\t%s%n", words, join(keys, " "));
-            bufferedWriter.write(text);
+            sink.write(converter.getBuffer(), 0, converter.length());
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private String join(Collection<String> coll, String delimiter) {
-        StringBuilder b = new StringBuilder();
-        for (String s : coll) {
-            b.append(s).append(delimiter);
+    /**
+     * 流水线中的阶段，输出与命令写出的每一行相同。
+     */
+    public LineStage newStage(CliConsole c, String[] args) {
+        if (args.length > 0) {
+            try {
+                DESCRIPTOR.parse(args);
+            } catch (Exception e) {
+                throw new IllegalArgumentException(CMD_NAME + " 参数错误：" + String.join(" ", args), e);
+            }
         }
-        if (b.length() > 0) {
-            b.setLength(b.length() - delimiter.length());
+        ShuangpinTable table = ShuangpinTable.HE;
+        ShuangpinConverter converter = new ShuangpinConverter(table, "");
+        return (line, out) -> {
+            if (Strings.isBlank(line) || line.charAt(0) == '#') {
+                return;
+            }
+            if (converter.convert(line)) {
+                out.accept(new String(converter.getBuffer(), 0, converter.length()));
+            } else {
+                reportMissing(c, table, line);
+            }
+        };
+    }
+
+    /** 出错的行很少，重新分列找出所有查不到的音节。 */
+    private void reportMissing(CliConsole c, ShuangpinTable table, String line) {
+        String[] split = line.split("\\s+");
+        for (int i = 1; i < split.length; i++) {
+            if (table.lookup(split[i], 0, split[i].length()) == null) {
+                c.printf("split[i] is not exits:  %s%n", split[i]);
+            }
         }
-        return b.toString();
     }
 
 
@@ -125,7 +154,8 @@ public class FullPyToSpCmd implements CliCommand {
         // nothing to do
     }
 
-    private Map<String, String> makeTable() {
+    /** 全拼音节到小鹤双拼，{@link ShuangpinTable#HE} 由它编译。 */
+    static Map<String, String> makeTable() {
         Map<String, String> s = new HashMap<>();
         Map<String, String> w = new HashMap<>();
         Map<String, String> m = new HashMap<>();
@@ -217,7 +247,7 @@ public class FullPyToSpCmd implements CliCommand {
             CliCmdLineOption opt1 = CliCmdLineOption.builder().shortName("e").longName("encoding").description("File charset").hasArg(true).build();
             CliCmdLineOption opt2 = CliCmdLineOption.builder().shortName("h").longName("help").description("Print help message.").build();
 
-            parser.addOption(opt1, opt2);
+            parser.addOption(opt1, opt2, RunStats.option());
         }
 
         @Override
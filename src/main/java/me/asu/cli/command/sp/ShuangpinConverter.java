@@ -0,0 +1,86 @@
+package me.asu.cli.command.sp;
+
+import java.util.Arrays;
+
+/**
+ * 把“词组 全拼音节…”一行转成“词组\t双拼 双拼…”，结果写进可以重复使用的字符缓冲区。
+ * <p>
+ * 分列规则与 {@code line.split("\\s+")} 相同。除了缓冲区变大，转换时不分配对象。
+ * 一个实例只能在一个线程里用。
+ */
+final class ShuangpinConverter {
+
+    private final ShuangpinTable table;
+    private final String         lineSeparator;
+    private       char[]         buf = new char[256];
+    private       int            length;
+
+    ShuangpinConverter(ShuangpinTable table, String lineSeparator) {
+        this.table = table;
+        this.lineSeparator = lineSeparator;
+    }
+
+    /**
+     * @return 所有音节都查到时返回 true，结果在 {@link #getBuffer()} 的前 {@link #length()} 个字符，
+     * 含行分隔符
+     */
+    boolean convert(String line) {
+        int end = line.length();
+        int i = 0;
+        while (i < end && !isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        length = 0;
+        ensure(i + 1);
+        line.getChars(0, i, buf, 0);
+        length = i;
+        buf[length++] = '\t';
+        boolean first = true;
+        while (true) {
+            while (i < end && isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            int start = i;
+            while (i < end && !isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            char[] code = table.lookup(line, start, i);
+            if (code == null) {
+                return false;
+            }
+            ensure(code.length + 1);
+            if (!first) {
+                buf[length++] = ' ';
+            }
+            first = false;
+            System.arraycopy(code, 0, buf, length, code.length);
+            length += code.length;
+        }
+        ensure(lineSeparator.length());
+        lineSeparator.getChars(0, lineSeparator.length(), buf, length);
+        length += lineSeparator.length();
+        return true;
+    }
+
+    char[] getBuffer() {
+        return buf;
+    }
+
+    int length() {
+        return length;
+    }
+
+    private void ensure(int more) {
+        if (length + more > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, length + more));
+        }
+    }
+
+    /** 与正则的 \s 相同。 */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
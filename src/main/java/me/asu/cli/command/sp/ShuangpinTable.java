@@ -0,0 +1,81 @@
+package me.asu.cli.command.sp;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 全拼音节到双拼编码的只读字典树，启动时编译一次，之后只读，可以多线程共用。
+ * <p>
+ * 音节只含 a-z 和 ü，每个节点的子节点是一个 27 格的数组段，逐字查一次数组就走到下一个节点，
+ * 查找不创建任何对象。
+ */
+final class ShuangpinTable {
+
+    /** 小鹤双拼。 */
+    static final ShuangpinTable HE = new ShuangpinTable(FullPyToSpCmd.makeTable());
+
+    private static final int ALPHABET = 27;
+
+    /** 子节点是 children[node * ALPHABET + symbol]，0 表示没有（根节点不会是子节点）。 */
+    private final int[]    children;
+    /** 节点上的编码，不是音节时为 null。 */
+    private final char[][] codes;
+
+    ShuangpinTable(Map<String, String> table) {
+        int nodes = 1;
+        for (String key : table.keySet()) {
+            nodes += key.length();
+        }
+        int[] next = new int[nodes * ALPHABET];
+        char[][] values = new char[nodes][];
+        int count = 1;
+        for (Map.Entry<String, String> e : table.entrySet()) {
+            String key = e.getKey();
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                int symbol = symbol(key.charAt(i));
+                if (symbol < 0) {
+                    throw new IllegalArgumentException("音节只能包含 a-z 和 ü：" + key);
+                }
+                int slot = node * ALPHABET + symbol;
+                if (next[slot] == 0) {
+                    next[slot] = count++;
+                }
+                node = next[slot];
+            }
+            values[node] = e.getValue().toCharArray();
+        }
+        children = Arrays.copyOf(next, count * ALPHABET);
+        codes = Arrays.copyOf(values, count);
+    }
+
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        return c == 'ü' ? 26 : -1;
+    }
+
+    /**
+     * @return s 中 [start, end) 这个音节的编码，不是音节时返回 null
+     */
+    char[] lookup(CharSequence s, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            int symbol = symbol(s.charAt(i));
+            if (symbol < 0) {
+                return null;
+            }
+            node = children[node * ALPHABET + symbol];
+            if (node == 0) {
+                return null;
+            }
+        }
+        return codes[node];
+    }
+
+    /** 节点个数。 */
+    int nodeCount() {
+        return codes.length;
+    }
+}
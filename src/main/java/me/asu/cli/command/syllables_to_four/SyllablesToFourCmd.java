@@ -1,6 +1,5 @@
 package me.asu.cli.command.syllables_to_four;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -10,6 +9,9 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
+import me.asu.cli.command.pipeline.LineStage;
+import me.asu.cli.command.util.OutputSink;
+import me.asu.cli.command.util.RunStats;
 import me.asu.tui.framework.api.*;
 import me.asu.tui.framework.util.CliArguments;
 import me.asu.tui.framework.util.CliCmdLineOption;
@@ -38,13 +40,19 @@ public class SyllablesToFourCmd implements CliCommand {
         if (argumentsParser.isError()) {
             return 1;
         }
-        processInput(argumentsParser);
-        return 0;
+        try (RunStats stats = RunStats.start(CMD_NAME, argumentsParser.arguments)) {
+            processInput(argumentsParser, stats);
+            stats.addBytesRead(argumentsParser.getInputPath());
+            stats.addBytesWritten(argumentsParser.getOutputPath());
+            stats.report(console);
+            return 0;
+        }
     }
 
-    private void processInput(ArgumentsParser argumentsParser) {
+    private void processInput(ArgumentsParser argumentsParser, RunStats stats) {
         try (Stream<String> lines = Files.lines(argumentsParser.getInputPath(), argumentsParser.getEncoding());
-             BufferedWriter bufferedWriter = Files.newBufferedWriter(argumentsParser.getOutputPath())
+             OutputSink sink = new OutputSink(argumentsParser.getOutputPath(), StandardCharsets.UTF_8);
+             RunStats.Phase p = stats.phase(RunStats.PHASE_PROCESS)
         ) {
             final AtomicInteger count = new AtomicInteger();
             lines.forEach(line -> {
@@ -53,38 +61,16 @@ public class SyllablesToFourCmd implements CliCommand {
                     return;
                 }
                 String[] split = line.split("\\s+");
-                String word = split[0];
-                if (word.length() != split.length - 1) {
-                    argumentsParser.c.printf("Error syables: %s%n", line);
+                if (!check(argumentsParser.c, line, split)) {
                     return;
                 }
-                List<String> keys = new ArrayList<>();
-                switch(word.length()){
-                    case 1:
-                        argumentsParser.c.printf("Error single word phrase: %s%n", line);
-                        return;
-                    case 2:
-                        keys.add(split[1]);
-                        keys.add(split[2]);
-                        break;
-                    case 3:
-                        keys.add(split[1].substring(0,1));
-                        keys.add(split[2].substring(0,1));
-                        keys.add(split[3]);
-                        break;
-                    default:
-                        keys.add(split[1].substring(0,1));
-                        keys.add(split[2].substring(0,1));
-                        keys.add(split[3].substring(0,1));
-                        keys.add(split[split.length-1].substring(0,1));
-                        break;
-                }
-                write(bufferedWriter, keys, split[0]);
+                write(sink, split);
                 if (count.get() % 1000 == 0) {
                     argumentsParser.c.printf("processing %d lines.%n", count.get());
                 }
             });
-            bufferedWriter.flush();
+            sink.flush();
+            stats.addLines(count.get());
             argumentsParser.c.printf("processing %d lines.%n", count.get());
             argumentsParser.c.printf("保存到： %s%n", argumentsParser.getOutputPath());
         } catch (IOException e) {
@@ -92,24 +78,74 @@ public class SyllablesToFourCmd implements CliCommand {
         }
     }
 
-    private void write(BufferedWriter bufferedWriter, List<String> keys, String words) {
+    /** 音节数与字数不符或者是单字时输出错误，返回 false。 */
+    private boolean check(CliConsole c, String line, String[] split) {
+        String word = split[0];
+        if (word.length() != split.length - 1) {
+            c.printf("Error syables: %s%n", line);
+            return false;
+        }
+        if (word.length() == 1) {
+            c.printf("Error single word phrase: %s%n", line);
+            return false;
+        }
+        return true;
+    }
+
+    private void write(OutputSink sink, String[] split) {
         try {
-            String text = String.format("%s\t%s%n", words, join(keys, ""));
-            bufferedWriter.write(text);
+            append(sink, split);
+            sink.newLine();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private String join(Collection<String> coll, String delimiter) {
-        StringBuilder b = new StringBuilder();
-        for (String s : coll) {
-            b.append(s).append(delimiter);
+    /**
+     * 两字词取两个音节的全码，三字词取前两字的首字母加第三字的全码，
+     * 四字及以上取前三字和最后一字的首字母。
+     */
+    private static void append(Appendable out, String[] split) throws IOException {
+        out.append(split[0]).append('\t');
+        switch (split[0].length()) {
+            case 2:
+                out.append(split[1]).append(split[2]);
+                break;
+            case 3:
+                out.append(split[1].charAt(0)).append(split[2].charAt(0)).append(split[3]);
+                break;
+            default:
+                out.append(split[1].charAt(0)).append(split[2].charAt(0))
+                   .append(split[3].charAt(0)).append(split[split.length - 1].charAt(0));
+                break;
         }
-        if (b.length() > 0) {
-            b.setLength(b.length() - delimiter.length());
+    }
+
+    /**
+     * 流水线中的阶段，输出与命令写出的每一行相同。
+     */
+    public LineStage newStage(CliConsole c, String[] args) {
+        if (descriptor == null) {
+            descriptor = new InnerDescriptor();
+        }
+        try {
+            parseArguments(args);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(CMD_NAME + " 参数错误：" + String.join(" ", args), e);
         }
-        return b.toString();
+        StringBuilder b = new StringBuilder();
+        return (line, out) -> {
+            if (Strings.isBlank(line) || line.charAt(0) == '#') {
+                return;
+            }
+            String[] split = line.split("\\s+");
+            if (!check(c, line, split)) {
+                return;
+            }
+            b.setLength(0);
+            append(b, split);
+            out.accept(b.toString());
+        };
     }
 
     private CliArguments parseArguments(String[] args) {
@@ -163,7 +199,7 @@ public class SyllablesToFourCmd implements CliCommand {
             opt2.setLongName("help");
             opt2.setHasArg(false);
             opt1.setDescription("打印帮助信息。");
-            parser.addOption(opt1, opt2);
+            parser.addOption(opt1, opt2, RunStats.option());
         }
 
         @Override
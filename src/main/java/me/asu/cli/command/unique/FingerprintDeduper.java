@@ -0,0 +1,493 @@
+package me.asu.cli.command.unique;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import me.asu.cli.command.util.Fingerprints;
+import me.asu.cli.command.util.LongHashSet;
+import me.asu.cli.command.util.LongLongHashMap;
+import me.asu.cli.command.util.OutputSink;
+
+/**
+ * 用 64 位行指纹去重，内存受限。
+ * <p>
+ * 先在内存里用指纹集合去重；集合超出内存预算时，改为按指纹高位把 (行号, 指纹) 分区写入临时文件，
+ * 逐个分区去重并在位图中标记保留的行号，最后按位图重新输出输入文件，保持首次出现的顺序。
+ * 分区数按平均行长估算；实际记录数超出内存预算的分区再按指纹接下来的几位分开。
+ * <p>
+ * 校验模式总是走分区流程，分区记录带上原始字节，指纹相同但内容不同的行不会被误删。
+ * <p>
+ * 不指定行分隔符时也走分区流程，最后按原始字节复制保留的行，行尾原样保留，
+ * 输出与 {@link MappedDeduper} 相同。
+ */
+class FingerprintDeduper
+{
+
+    private static final int BUFFER_SIZE      = 1 << 16;
+    private static final int PARTITION_BUFFER = 1 << 15;
+    private static final int MAX_BITS         = 10;
+    /** 分区超出内存预算时，再按指纹接下来的这么多位分开。 */
+    private static final int RESPLIT_BITS     = 4;
+    /** 估算的平均行长，用于从文件大小估算行数。 */
+    private static final int AVG_LINE_BYTES   = 16;
+
+    private final long    memoryBudget;
+    private final boolean verify;
+    private       int     partitions;
+    private       long    collisions;
+
+    FingerprintDeduper(long memoryBudget, boolean verify)
+    {
+        this.memoryBudget = memoryBudget;
+        this.verify = verify;
+    }
+
+    /** 最近一次去重使用的分区数，0 表示全部在内存中完成。 */
+    int getPartitions()
+    {
+        return partitions;
+    }
+
+    /** 校验模式下发现的指纹冲突数。 */
+    long getCollisions()
+    {
+        return collisions;
+    }
+
+    /**
+     * @param lineSeparator 输出的行分隔符，null 表示保留每行原来的行尾
+     */
+    void dedup(Path input, Path output, String lineSeparator) throws IOException
+    {
+        partitions = 0;
+        collisions = 0;
+        if (!verify && lineSeparator != null && dedupInMemory(input, output, lineSeparator)) {
+            return;
+        }
+        dedupPartitioned(input, output, lineSeparator);
+    }
+
+    /**
+     * @return 超出内存预算时返回 false，输出文件作废
+     */
+    private boolean dedupInMemory(Path input, Path output, String lineSeparator)
+            throws IOException
+    {
+        LongHashSet set = new LongHashSet();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1);
+             OutputSink writer = new OutputSink(output, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (set.add(Fingerprints.hash64(line))) {
+                    writer.append(line).append(lineSeparator);
+                    if (set.memoryBytes() > memoryBudget || set.atCapacity()) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void dedupPartitioned(Path input, Path output, String lineSeparator)
+            throws IOException
+    {
+        int bits = partitionBits(Files.size(input));
+        partitions = 1 << bits;
+        Path dir = Files.createTempDirectory("line-unique-");
+        Path[] files = new Path[partitions];
+        try {
+            long[] records = new long[partitions];
+            int lines = split(input, dir, files, bits, records);
+            BitSet keep = new BitSet(lines);
+            for (int i = 0; i < files.length; i++) {
+                dedupPartition(files[i], records[i], bits, keep);
+            }
+            if (lineSeparator == null) {
+                copyKept(input, output, keep);
+            } else {
+                writeKept(input, output, keep, lineSeparator);
+            }
+        } finally {
+            for (Path f : files) {
+                if (f != null) {
+                    Files.deleteIfExists(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private int partitionBits(long inputSize)
+    {
+        long entries = inputSize / AVG_LINE_BYTES + 1;
+        long needed = entries * entryBytes();
+        int bits = 1;
+        while (bits < MAX_BITS && (needed >> bits) > memoryBudget) {
+            bits++;
+        }
+        return bits;
+    }
+
+    /** 每条记录在指纹表中占用的内存：开放寻址表装载因子 0.5，扩容时新旧数组并存。 */
+    private int entryBytes()
+    {
+        return verify ? 64 : 32;
+    }
+
+    /**
+     * 第一遍：按指纹高位把记录分到各个分区。
+     *
+     * @param records 输出各分区的记录数
+     * @return 行数
+     */
+    private int split(Path input, Path dir, Path[] files, int bits, long[] records)
+            throws IOException
+    {
+        DataOutputStream[] outs = new DataOutputStream[files.length];
+        try (BufferedReader reader = Files.newBufferedReader(input,
+                StandardCharsets.ISO_8859_1)) {
+            for (int i = 0; i < files.length; i++) {
+                files[i] = dir.resolve("part-" + i);
+                outs[i] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(files[i]), PARTITION_BUFFER));
+            }
+            int lineNo = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (lineNo == Integer.MAX_VALUE) {
+                    throw new IOException("too many lines: " + input);
+                }
+                long fp = Fingerprints.hash64(line);
+                int part = (int) (fp >>> (64 - bits));
+                DataOutputStream out = outs[part];
+                records[part]++;
+                out.writeInt(lineNo);
+                out.writeLong(fp);
+                if (verify) {
+                    byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                lineNo++;
+            }
+            return lineNo;
+        } finally {
+            for (DataOutputStream out : outs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 对一个分区去重，处理完删除分区文件。
+     * <p>
+     * 记录数超出内存预算时按指纹接下来的 {@link #RESPLIT_BITS} 位再分开，逐个处理；
+     * 指纹已经用完，或者再分也没有分开（记录的指纹前缀都相同）时不再分，照常处理。
+     *
+     * @param usedBits 分区已经用掉的指纹高位数
+     */
+    private void dedupPartition(Path file, long records, int usedBits, BitSet keep)
+            throws IOException
+    {
+        if (records > memoryBudget / entryBytes() && usedBits + RESPLIT_BITS <= 64) {
+            Path[] parts = new Path[1 << RESPLIT_BITS];
+            long[] counts = new long[parts.length];
+            try {
+                resplit(file, parts, counts, usedBits);
+                Files.delete(file);
+                boolean separated = true;
+                for (long count : counts) {
+                    separated &= count < records;
+                }
+                partitions += parts.length - 1;
+                for (int i = 0; i < parts.length; i++) {
+                    if (separated) {
+                        dedupPartition(parts[i], counts[i], usedBits + RESPLIT_BITS, keep);
+                    } else {
+                        dedupFitted(parts[i], counts[i], keep);
+                    }
+                }
+            } finally {
+                for (Path f : parts) {
+                    if (f != null) {
+                        Files.deleteIfExists(f);
+                    }
+                }
+            }
+            return;
+        }
+        dedupFitted(file, records, keep);
+    }
+
+    private void dedupFitted(Path file, long records, BitSet keep) throws IOException
+    {
+        if (verify) {
+            dedupPartitionVerified(file, keep);
+        } else {
+            dedupPartitionFingerprint(file, records, keep);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    /** 按指纹 usedBits 之后的 {@link #RESPLIT_BITS} 位把分区的记录原样分到 parts。 */
+    private void resplit(Path file, Path[] parts, long[] counts, int usedBits)
+            throws IOException
+    {
+        DataOutputStream[] outs = new DataOutputStream[parts.length];
+        try (DataInputStream in = open(file)) {
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = file.resolveSibling(file.getFileName() + "-" + i);
+                outs[i] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(parts[i]), PARTITION_BUFFER));
+            }
+            long size = Files.size(file);
+            byte[] bytes = new byte[256];
+            long offset = 0;
+            while (offset < size) {
+                int lineNo = in.readInt();
+                long fp = in.readLong();
+                int part = (int) ((fp << usedBits) >>> (64 - RESPLIT_BITS));
+                DataOutputStream out = outs[part];
+                counts[part]++;
+                out.writeInt(lineNo);
+                out.writeLong(fp);
+                offset += 12;
+                if (verify) {
+                    int len = in.readInt();
+                    if (len > bytes.length) {
+                        bytes = new byte[Math.max(len, bytes.length * 2)];
+                    }
+                    in.readFully(bytes, 0, len);
+                    out.writeInt(len);
+                    out.write(bytes, 0, len);
+                    offset += 4 + len;
+                }
+            }
+        } finally {
+            for (DataOutputStream out : outs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    private void dedupPartitionFingerprint(Path file, long records, BitSet keep)
+            throws IOException
+    {
+        // 最多按预算预留；没能再分开的分区可能更大，由集合自己扩容
+        long expected = Math.min(records, memoryBudget / entryBytes());
+        LongHashSet set = new LongHashSet((int) Math.min(expected, 1 << 29));
+        try (DataInputStream in = open(file)) {
+            for (long i = 0; i < records; i++) {
+                int lineNo = in.readInt();
+                if (set.add(in.readLong())) {
+                    keep.set(lineNo);
+                }
+            }
+        }
+    }
+
+    /**
+     * 指纹重复时回读首次出现的记录比较原始字节；内容不同则是冲突，冲突的行另用精确集合去重。
+     */
+    private void dedupPartitionVerified(Path file, BitSet keep) throws IOException
+    {
+        long size = Files.size(file);
+        LongLongHashMap first = new LongLongHashMap();
+        Set<String> collided = new HashSet<>();
+        byte[] bytes = new byte[256];
+        ByteBuffer lenBuf = ByteBuffer.allocate(4);
+        ByteBuffer other = ByteBuffer.allocate(256);
+        try (DataInputStream in = open(file);
+             FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long offset = 0;
+            while (offset < size) {
+                int lineNo = in.readInt();
+                long fp = in.readLong();
+                int len = in.readInt();
+                if (len > bytes.length) {
+                    bytes = new byte[Math.max(len, bytes.length * 2)];
+                }
+                in.readFully(bytes, 0, len);
+                long prev = first.putIfAbsent(fp, offset);
+                if (prev == LongLongHashMap.NO_VALUE) {
+                    keep.set(lineNo);
+                } else {
+                    other = readRecordBytes(ch, prev, lenBuf, other);
+                    if (!sameBytes(other, bytes, len)) {
+                        String s = new String(bytes, 0, len, StandardCharsets.ISO_8859_1);
+                        if (collided.add(s)) {
+                            collisions++;
+                            keep.set(lineNo);
+                        }
+                    }
+                }
+                offset += 16 + len;
+            }
+        }
+    }
+
+    private static ByteBuffer readRecordBytes(FileChannel ch, long offset, ByteBuffer lenBuf,
+                                              ByteBuffer buf) throws IOException
+    {
+        lenBuf.clear();
+        readFully(ch, lenBuf, offset + 12);
+        int len = lenBuf.getInt(0);
+        if (len > buf.capacity()) {
+            buf = ByteBuffer.allocate(Math.max(len, buf.capacity() * 2));
+        }
+        buf.clear();
+        buf.limit(len);
+        readFully(ch, buf, offset + 16);
+        buf.flip();
+        return buf;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position)
+            throws IOException
+    {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position);
+            if (n < 0) {
+                throw new IOException("unexpected end of partition file");
+            }
+            position += n;
+        }
+    }
+
+    private static boolean sameBytes(ByteBuffer a, byte[] b, int len)
+    {
+        if (a.remaining() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (a.get(i) != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 最后一遍：按位图输出保留的行。 */
+    private void writeKept(Path input, Path output, BitSet keep, String lineSeparator)
+            throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1);
+             OutputSink writer = new OutputSink(output, StandardCharsets.ISO_8859_1)) {
+            int lineNo = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (keep.get(lineNo++)) {
+                    writer.append(line).append(lineSeparator);
+                }
+            }
+        }
+    }
+
+    /**
+     * 最后一遍：按位图原样复制保留的行，包括行尾。行的切分与 {@link BufferedReader#readLine()}
+     * 相同（\n、\r 或 \r\n），行号与 {@link #split} 一致。
+     */
+    private void copyKept(Path input, Path output, BitSet keep) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(input);
+             FileChannel src = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            KeptRanges kept = new KeptRanges(keep, src, dst);
+            byte[] buf = new byte[BUFFER_SIZE];
+            boolean cr = false;
+            long pos = 0;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int i = 0; i < n; i++, pos++) {
+                    byte b = buf[i];
+                    if (b == '\n') {
+                        kept.endLine(pos + 1);
+                        cr = false;
+                    } else {
+                        if (cr) {
+                            kept.endLine(pos);
+                        }
+                        cr = b == '\r';
+                    }
+                }
+            }
+            kept.finish(pos);
+        }
+    }
+
+    private static DataInputStream open(Path file) throws IOException
+    {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                BUFFER_SIZE));
+    }
+
+    /** 按行号记录保留的字节区间，相连的区间合并后用 {@link FileChannel#transferTo} 写出。 */
+    private static class KeptRanges
+    {
+
+        private final BitSet      keep;
+        private final FileChannel src;
+        private final FileChannel dst;
+        private       int         lineNo;
+        private       long        lineStart;
+        private       long        runStart;
+        private       long        runEnd;
+
+        KeptRanges(BitSet keep, FileChannel src, FileChannel dst)
+        {
+            this.keep = keep;
+            this.src = src;
+            this.dst = dst;
+        }
+
+        /** 当前行在 end 处结束（包括行尾）。 */
+        void endLine(long end) throws IOException
+        {
+            if (keep.get(lineNo++)) {
+                if (lineStart != runEnd) {
+                    flush();
+                    runStart = lineStart;
+                }
+                runEnd = end;
+            }
+            lineStart = end;
+        }
+
+        /** 输入在 size 处结束，最后一行可能没有行尾。 */
+        void finish(long size) throws IOException
+        {
+            if (lineStart < size) {
+                endLine(size);
+            }
+            flush();
+        }
+
+        private void flush() throws IOException
+        {
+            long pos = runStart;
+            while (pos < runEnd) {
+                pos += src.transferTo(pos, runEnd - pos, dst);
+            }
+            runStart = runEnd;
+        }
+    }
+}
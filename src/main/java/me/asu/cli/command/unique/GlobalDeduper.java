@@ -0,0 +1,117 @@
+package me.asu.cli.command.unique;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import me.asu.cli.command.util.Fingerprints;
+import me.asu.cli.command.util.LongLongHashMap;
+import me.asu.cli.command.util.OutputSink;
+
+/**
+ * 跨文件去重：一行在前面任何文件（或本文件前面）出现过，就从后面的文件中删除。
+ * <p>
+ * 分两遍，每一遍各文件可以并行处理。第一遍把每个指纹首次出现的位置（文件序号, 行号）
+ * 取最小值记入共享表；第二遍只保留位置与表中记录相同的行。结果与处理顺序无关。
+ * <p>
+ * 共享表按指纹高位分段，每段一把锁。只比较 64 位指纹，不回读原文校验。
+ */
+class GlobalDeduper
+{
+
+    private static final int  SEGMENT_BITS = 6;
+    private static final int  LINE_BITS    = 40;
+    private static final long MAX_FILES    = 1L << (63 - LINE_BITS);
+    private static final long MAX_LINES    = 1L << LINE_BITS;
+
+    private final LongLongHashMap[] segments = new LongLongHashMap[1 << SEGMENT_BITS];
+
+    GlobalDeduper()
+    {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new LongLongHashMap();
+        }
+    }
+
+    /** 第一遍：登记文件中每一行的位置。 */
+    void collect(int fileIndex, Path input) throws IOException
+    {
+        if (fileIndex >= MAX_FILES) {
+            throw new IOException("too many files");
+        }
+        try (BufferedReader reader = Files.newBufferedReader(input,
+                StandardCharsets.ISO_8859_1)) {
+            long lineNo = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (lineNo == MAX_LINES) {
+                    throw new IOException("too many lines: " + input);
+                }
+                putMin(Fingerprints.hash64(line), position(fileIndex, lineNo++));
+            }
+        }
+    }
+
+    /**
+     * 第二遍：只输出首次出现的行。
+     *
+     * @return 删除的行数
+     */
+    long write(int fileIndex, Path input, Path output, String lineSeparator) throws IOException
+    {
+        long removed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1);
+             OutputSink writer = new OutputSink(output, StandardCharsets.ISO_8859_1)) {
+            long lineNo = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (get(Fingerprints.hash64(line)) == position(fileIndex, lineNo++)) {
+                    writer.append(line).append(lineSeparator);
+                } else {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /** 已登记的不同指纹数。 */
+    long size()
+    {
+        long n = 0;
+        for (LongLongHashMap segment : segments) {
+            synchronized (segment) {
+                n += segment.size();
+            }
+        }
+        return n;
+    }
+
+    private static long position(int fileIndex, long lineNo)
+    {
+        return ((long) fileIndex << LINE_BITS) | lineNo;
+    }
+
+    private LongLongHashMap segment(long fp)
+    {
+        return segments[(int) (fp >>> (64 - SEGMENT_BITS))];
+    }
+
+    private void putMin(long fp, long position)
+    {
+        LongLongHashMap segment = segment(fp);
+        synchronized (segment) {
+            long prev = segment.putIfAbsent(fp, position);
+            if (prev != LongLongHashMap.NO_VALUE && position < prev) {
+                segment.put(fp, position);
+            }
+        }
+    }
+
+    /** 只在第二遍调用，此时表已不再修改，两遍之间的任务提交与等待保证了可见性。 */
+    private long get(long fp)
+    {
+        return segment(fp).get(fp);
+    }
+}
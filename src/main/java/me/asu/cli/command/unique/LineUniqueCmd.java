@@ -1,16 +1,29 @@
 package me.asu.cli.command.unique;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
+import me.asu.cli.command.pipeline.LineStage;
+import me.asu.cli.command.util.CommandOptions;
+import me.asu.cli.command.util.Fingerprints;
+import me.asu.cli.command.util.LongHashSet;
+import me.asu.cli.command.util.OutputSink;
+import me.asu.cli.command.util.RunStats;
 import me.asu.tui.framework.api.CliCommand;
 import me.asu.tui.framework.api.CliConsole;
 import me.asu.tui.framework.api.CliContext;
@@ -26,6 +39,8 @@ public class LineUniqueCmd implements CliCommand
 
     private static final String     NAMESPACE = "asu";
     private static final String     CMD_NAME  = "line-unique";
+    /** 流水线中按整行去重时，每行除字符数据外的估算开销（HashMap 节点、槽位、String 对象）。 */
+    private static final int        STAGE_LINE_OVERHEAD = 96;
     private              Descriptor descriptor;
 
     @Override
@@ -50,31 +65,214 @@ public class LineUniqueCmd implements CliCommand
             descriptor.printUsage(console);
             return null;
         }
+        int threads = CommandOptions.getThreads(arguments);
+        boolean zeroCopy = arguments.hasParam("z");
+        boolean verify = arguments.hasParam("v") || zeroCopy;
+        boolean fingerprint = arguments.hasParam("f") || verify;
+        // 每个工作线程各自占用一份预算
+        long memoryBudget = CommandOptions.getMemoryBudget(arguments) / threads;
         List<String> remain = arguments.getRemain();
-        remain.forEach(inputFile -> {
-            Path inputPath = Paths.get(inputFile);
-            Path outputPath = Paths.get(inputFile + ".tmp");
-            try {
-                process(console, inputPath, outputPath);
-                Files.move(outputPath, inputPath, StandardCopyOption.REPLACE_EXISTING);
-                console.printf("处理文件： %s 完成%n", inputPath);
-            } catch (IOException e) {
-                e.printStackTrace();
-                console.printf("处理文件： %s 失败。%n", inputPath);
-                console.flush();
+        // 原文件会被替换，先记下读入的字节数
+        try (RunStats stats = RunStats.start(CMD_NAME, arguments)) {
+            for (String file : remain) {
+                stats.addBytesRead(Paths.get(file));
             }
-        });
-        return 0;
+            int failures;
+            if (arguments.hasParam("g")) {
+                failures = processGlobal(console, remain, threads, stats);
+            } else {
+                AtomicInteger done = new AtomicInteger();
+                AtomicInteger failed = new AtomicInteger();
+                try (RunStats.Phase p = stats.phase(RunStats.PHASE_PROCESS)) {
+                    int crashed = forEachFile(remain.size(), threads, i -> {
+                        String inputFile = remain.get(i);
+                        boolean ok = processFile(console, inputFile, fingerprint, verify, zeroCopy,
+                                memoryBudget);
+                        if (!ok) {
+                            failed.incrementAndGet();
+                        }
+                        log(console, "处理文件： %s %s（%d/%d）%n", inputFile, ok ? "完成" : "失败",
+                                done.incrementAndGet(), remain.size());
+                    });
+                    failures = failed.get() + crashed;
+                }
+            }
+            for (String file : remain) {
+                stats.addBytesWritten(Paths.get(file));
+            }
+            stats.report(console);
+            if (failures > 0) {
+                log(console, "%d个文件处理失败。%n", failures);
+                return 1;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 跨文件去重，后面的文件删除前面文件中出现过的行。
+     * <p>
+     * 第二遍按第一遍记下的首次出现位置决定保留哪些行，第一遍有任何文件没扫描完时
+     * 位置表不完整，不做第二遍，所有文件保持不变。
+     *
+     * @return 失败的文件数
+     */
+    private int processGlobal(CliConsole c, List<String> remain, int threads, RunStats stats)
+    {
+        GlobalDeduper global = new GlobalDeduper();
+        AtomicInteger done = new AtomicInteger();
+        // 只有扫描完成才置位，抛出异常或没有运行的文件都算失败
+        boolean[] scanned = new boolean[remain.size()];
+        try (RunStats.Phase p = stats.phase(RunStats.PHASE_PARSE)) {
+            forEachFile(remain.size(), threads, i -> {
+                try {
+                    global.collect(i, Paths.get(remain.get(i)));
+                    scanned[i] = true;
+                    log(c, "扫描文件： %s（%d/%d）%n", remain.get(i), done.incrementAndGet(),
+                            remain.size());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+        int unscanned = 0;
+        for (int i = 0; i < scanned.length; i++) {
+            if (!scanned[i]) {
+                log(c, "扫描文件： %s 失败%n", remain.get(i));
+                unscanned++;
+            }
+        }
+        if (unscanned > 0) {
+            log(c, "有%d个文件扫描失败，没有修改任何文件。%n", unscanned);
+            return unscanned;
+        }
+        log(c, "共%d个不同的行。%n", global.size());
+        done.set(0);
+        AtomicInteger failures = new AtomicInteger();
+        try (RunStats.Phase p = stats.phase(RunStats.PHASE_WRITE)) {
+            int crashed = forEachFile(remain.size(), threads, i -> {
+                Path inputPath = Paths.get(remain.get(i));
+                Path outputPath = Paths.get(remain.get(i) + ".tmp");
+                boolean ok = true;
+                long removed = 0;
+                try {
+                    removed = global.write(i, inputPath, outputPath, OutputSink.LINE_SEPARATOR);
+                    Files.move(outputPath, inputPath, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                    deleteQuietly(outputPath);
+                    ok = false;
+                    failures.incrementAndGet();
+                }
+                log(c, "处理文件： %s %s，删除%d行（%d/%d）%n", inputPath, ok ? "完成" : "失败",
+                        removed, done.incrementAndGet(), remain.size());
+            });
+            return failures.get() + crashed;
+        }
+    }
+
+    /**
+     * 用最多 threads 个线程处理 count 个文件，等待全部任务结束后返回。
+     * 一个任务抛出异常不影响其余任务；被中断时不再开始新的任务，但仍等正在运行的任务结束。
+     *
+     * @return 抛出异常或没有运行的任务数
+     */
+    private int forEachFile(int count, int threads, IntConsumer task)
+    {
+        int failures = 0;
+        if (threads <= 1 || count <= 1) {
+            for (int i = 0; i < count; i++) {
+                try {
+                    task.accept(i);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    failures++;
+                }
+            }
+            return failures;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, count));
+        boolean interrupted = false;
+        try {
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                futures.add(pool.submit(() -> task.accept(index)));
+            }
+            pool.shutdown();
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        // 取消还没开始的任务，已经开始的要等它写完
+                        interrupted = true;
+                        for (Future<?> f : futures) {
+                            f.cancel(false);
+                        }
+                    } catch (ExecutionException e) {
+                        e.getCause().printStackTrace();
+                        failures++;
+                        break;
+                    } catch (CancellationException e) {
+                        failures++;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return failures;
     }
 
-    private void process(CliConsole c, Path inputPath, Path outputPath) throws IOException
+    /**
+     * 去重一个文件，先写到 .tmp 再替换原文件。
+     */
+    private boolean processFile(CliConsole c, String inputFile, boolean fingerprint,
+                                boolean verify, boolean zeroCopy, long memoryBudget)
+    {
+        Path inputPath = Paths.get(inputFile);
+        Path outputPath = Paths.get(inputFile + ".tmp");
+        log(c, "处理文件： %s%n", inputPath);
+        try {
+            if (zeroCopy) {
+                process(c, new MappedDeduper(memoryBudget),
+                        new FingerprintDeduper(memoryBudget, true), inputPath, outputPath);
+            } else if (fingerprint) {
+                process(c, new FingerprintDeduper(memoryBudget, verify), inputPath, outputPath,
+                        OutputSink.LINE_SEPARATOR);
+            } else {
+                process(inputPath, outputPath);
+            }
+            Files.move(outputPath, inputPath, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            deleteQuietly(outputPath);
+            return false;
+        }
+    }
+
+    /** 删除没写完的临时文件，原文件保持不变。 */
+    private void deleteQuietly(Path path)
+    {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    void process(Path inputPath, Path outputPath) throws IOException
     {
-        c.printf("处理文件： %s%n", inputPath);
-        c.flush();
         Set<String> set = new HashSet<>();
         try (Stream<String> lines = Files.lines(inputPath, StandardCharsets.ISO_8859_1);
-             BufferedWriter writer = Files.newBufferedWriter(outputPath,
-                     StandardCharsets.ISO_8859_1)) {
+             OutputSink writer = new OutputSink(outputPath, StandardCharsets.ISO_8859_1)) {
             set.clear();
             lines.forEach(line -> {
                 if (!set.contains(line)) {
@@ -86,16 +284,103 @@ public class LineUniqueCmd implements CliCommand
         }
     }
 
-    private void write(BufferedWriter bufferedWriter, String w)
+    private void process(CliConsole c, FingerprintDeduper deduper, Path inputPath,
+                         Path outputPath, String lineSeparator) throws IOException
+    {
+        deduper.dedup(inputPath, outputPath, lineSeparator);
+        if (deduper.getPartitions() > 0) {
+            log(c, "%s： 按指纹分为%d个分区处理。%n", inputPath, deduper.getPartitions());
+        }
+        if (deduper.getCollisions() > 0) {
+            log(c, "%s： 校验发现%d个指纹冲突。%n", inputPath, deduper.getCollisions());
+        }
+    }
+
+    /**
+     * 按字节去重，指纹表超出内存预算时改用分区校验模式，同样原样保留行尾。
+     */
+    private void process(CliConsole c, MappedDeduper mapped, FingerprintDeduper fallback,
+                         Path inputPath, Path outputPath) throws IOException
+    {
+        if (!mapped.dedup(inputPath, outputPath)) {
+            log(c, "%s： 超出内存预算，改为按指纹分区处理。%n", inputPath);
+            process(c, fallback, inputPath, outputPath, null);
+            return;
+        }
+        if (mapped.getCollisions() > 0) {
+            log(c, "%s： 校验发现%d个指纹冲突。%n", inputPath, mapped.getCollisions());
+        }
+    }
+
+    /** 多个文件并行处理时共用控制台，整条消息加锁输出。 */
+    private void log(CliConsole c, String format, Object... args)
+    {
+        synchronized (c) {
+            c.printf(format, args);
+            c.flush();
+        }
+    }
+
+    private void write(OutputSink sink, String w)
     {
         try {
-            bufferedWriter.write(w);
-            bufferedWriter.write(System.getProperty("line.separator"));
+            sink.writeLine(w);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 流水线中的阶段，保留每行第一次出现的位置。输入不是文件，不支持 -z、-v、-g、-j；
+     * 指定 -f 时只保存指纹，否则保存整行。内存放不下时不能分区，超出 -m 的预算就报错。
+     */
+    public LineStage newStage(CliConsole c, String[] args)
+    {
+        if (descriptor == null) {
+            descriptor = new InnerDescriptor();
+        }
+        CliArguments arguments;
+        try {
+            arguments = parseArguments(args);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(CMD_NAME + " 参数错误：" + String.join(" ", args), e);
+        }
+        if (arguments.hasParam("z") || arguments.hasParam("v") || arguments.hasParam("g")
+                || arguments.hasParam("j")) {
+            throw new IllegalArgumentException(CMD_NAME + " 在流水线中不支持 -z、-v、-g、-j。");
+        }
+        long memoryBudget = CommandOptions.getMemoryBudget(arguments);
+        if (arguments.hasParam("f")) {
+            LongHashSet seen = new LongHashSet();
+            return (line, out) -> {
+                if (seen.add(Fingerprints.hash64(line))) {
+                    if (seen.memoryBytes() > memoryBudget) {
+                        throw overBudget(memoryBudget, seen.size());
+                    }
+                    out.accept(line);
+                }
+            };
+        }
+        Set<String> seen = new HashSet<>();
+        long[] usedBytes = new long[1];
+        return (line, out) -> {
+            if (seen.add(line)) {
+                usedBytes[0] += STAGE_LINE_OVERHEAD + 2L * line.length();
+                if (usedBytes[0] > memoryBudget) {
+                    throw overBudget(memoryBudget, seen.size());
+                }
+                out.accept(line);
+            }
+        };
+    }
+
+    private static IOException overBudget(long memoryBudget, int lines)
+    {
+        return new IOException(String.format(
+                "%s：%d个不同的行超出内存预算 %d MB，请加大 -m、改用 -f，或者不在流水线中去重。",
+                CMD_NAME, lines, memoryBudget >> 20));
+    }
+
     public CliArguments parseArguments(String[] args)
     {
         CliArguments arguments = new CliArguments();
@@ -132,8 +417,43 @@ public class LineUniqueCmd implements CliCommand
                                                    .longName("help")
                                                    .description("Print help message")
                                                    .build();
+            CliCmdLineOption opt2 = CliCmdLineOption.builder()
+                                                    .shortName("f")
+                                                    .longName("fingerprint")
+                                                    .description("只保存行的 64 位指纹，超出内存预算时按指纹分区写临时文件。")
+                                                    .build();
+            CliCmdLineOption opt3 = CliCmdLineOption.builder()
+                                                    .shortName("m")
+                                                    .longName("memory")
+                                                    .hasArg(true)
+                                                    .description("指纹模式的内存预算（MB），默认为最大堆的 1/4。")
+                                                    .build();
+            CliCmdLineOption opt4 = CliCmdLineOption.builder()
+                                                    .shortName("v")
+                                                    .longName("verify")
+                                                    .description("指纹模式下回读原文校验，避免指纹冲突误删。")
+                                                    .build();
+
+            CliCmdLineOption opt5 = CliCmdLineOption.builder()
+                                                    .shortName("z")
+                                                    .longName("zero-copy")
+                                                    .description("按字节映射输入去重，不解码，原样保留行尾。")
+                                                    .build();
+
+            CliCmdLineOption opt6 = CliCmdLineOption.builder()
+                                                    .shortName("j")
+                                                    .longName("jobs")
+                                                    .hasArg(true)
+                                                    .description("同时处理的文件数，默认为 1。内存预算由各线程均分。")
+                                                    .build();
+
+            CliCmdLineOption opt7 = CliCmdLineOption.builder()
+                                                    .shortName("g")
+                                                    .longName("global")
+                                                    .description("跨文件去重，删除前面文件中已出现过的行。按指纹比较。")
+                                                    .build();
 
-            parser.addOption(opt);
+            parser.addOption(opt, opt2, opt3, opt4, opt5, opt6, opt7, RunStats.option());
         }
 
         @Override
@@ -0,0 +1,210 @@
+package me.asu.cli.command.unique;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import me.asu.cli.command.util.Fingerprints;
+import me.asu.cli.command.util.LongLongHashMap;
+
+/**
+ * 按字节去重，不解码。
+ * <p>
+ * 输入分窗口映射到内存，直接在字节上查找行尾并计算指纹；指纹表记录首次出现的文件偏移，
+ * 指纹相同时回到该偏移比较原始字节，结果是精确的。保留的行在输入中是连续的区间，
+ * 合并后用 {@link FileChannel#transferTo} 写出，原样保留行尾。
+ * <p>
+ * 行尾与 {@link java.io.BufferedReader#readLine()} 相同：\n、\r 或 \r\n。
+ */
+class MappedDeduper
+{
+
+    private static final long WINDOW = 1L << 30;
+
+    private final long memoryBudget;
+    private       long collisions;
+
+    private FileChannel      in;
+    private long             fileSize;
+    private MappedByteBuffer window;
+    private long             windowStart;
+    private long             windowEnd;
+    private ByteBuffer       scratch = ByteBuffer.allocate(256);
+
+    private FileChannel out;
+    private long        runStart;
+    private long        runEnd;
+
+    MappedDeduper(long memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /** 发现的指纹冲突数。 */
+    long getCollisions()
+    {
+        return collisions;
+    }
+
+    /**
+     * @return 指纹表超出内存预算时返回 false，输出文件作废
+     */
+    boolean dedup(Path input, Path output) throws IOException
+    {
+        collisions = 0;
+        LongLongHashMap first = new LongLongHashMap();
+        Set<String> collided = new HashSet<>();
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.in = in;
+            this.out = out;
+            this.fileSize = in.size();
+            runStart = runEnd = 0;
+            long pos = 0;
+            map(0);
+            while (pos < fileSize) {
+                if (pos >= windowEnd) {
+                    map(pos);
+                }
+                int start = (int) (pos - windowStart);
+                int limit = (int) (windowEnd - windowStart);
+                int end = start;
+                while (end < limit && !isTerminator(window.get(end))) {
+                    end++;
+                }
+                if (end == limit && windowEnd < fileSize) {
+                    // 行跨越窗口，从行首重新映射
+                    if (pos == windowStart) {
+                        throw new IOException("line too long at offset " + pos);
+                    }
+                    map(pos);
+                    continue;
+                }
+                int len = end - start;
+                int next = end;
+                if (next < limit && window.get(next) == '\r') {
+                    next++;
+                    if (next < limit && window.get(next) == '\n') {
+                        next++;
+                    } else if (next == limit && windowEnd < fileSize) {
+                        // \r 恰好落在窗口末尾，需要看下一个字节
+                        if (pos == windowStart) {
+                            throw new IOException("line too long at offset " + pos);
+                        }
+                        map(pos);
+                        continue;
+                    }
+                } else if (next < limit) {
+                    next++;
+                }
+                long lineEnd = windowStart + next;
+
+                long fp = Fingerprints.hash64(window, start, end);
+                long prev = first.putIfAbsent(fp, pos);
+                boolean keep;
+                if (prev == LongLongHashMap.NO_VALUE) {
+                    keep = true;
+                } else if (sameLine(prev, start, len)) {
+                    keep = false;
+                } else {
+                    byte[] bytes = new byte[len];
+                    for (int i = 0; i < len; i++) {
+                        bytes[i] = window.get(start + i);
+                    }
+                    keep = collided.add(new String(bytes, StandardCharsets.ISO_8859_1));
+                    if (keep) {
+                        collisions++;
+                    }
+                }
+                if (keep) {
+                    keep(pos, lineEnd);
+                    if (first.memoryBytes() > memoryBudget || first.atCapacity()) {
+                        return false;
+                    }
+                }
+                pos = lineEnd;
+            }
+            flush();
+            return true;
+        } finally {
+            this.in = null;
+            this.out = null;
+            this.window = null;
+        }
+    }
+
+    private static boolean isTerminator(byte b)
+    {
+        return b == '\n' || b == '\r';
+    }
+
+    private void map(long pos) throws IOException
+    {
+        windowStart = pos;
+        windowEnd = Math.min(fileSize, pos + WINDOW);
+        window = in.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+    }
+
+    /** 比较 prev 处的行与当前窗口 [start, start + len) 的字节。 */
+    private boolean sameLine(long prev, int start, int len) throws IOException
+    {
+        long after = prev + len;
+        if (after > fileSize) {
+            return false;
+        }
+        if (prev >= windowStart && after < windowEnd) {
+            int p = (int) (prev - windowStart);
+            for (int i = 0; i < len; i++) {
+                if (window.get(p + i) != window.get(start + i)) {
+                    return false;
+                }
+            }
+            return isTerminator(window.get(p + len));
+        }
+        int need = after < fileSize ? len + 1 : len;
+        if (scratch.capacity() < need) {
+            scratch = ByteBuffer.allocate(Math.max(need, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        scratch.limit(need);
+        long position = prev;
+        while (scratch.hasRemaining()) {
+            int n = in.read(scratch, position);
+            if (n < 0) {
+                return false;
+            }
+            position += n;
+        }
+        for (int i = 0; i < len; i++) {
+            if (scratch.get(i) != window.get(start + i)) {
+                return false;
+            }
+        }
+        return need == len || isTerminator(scratch.get(len));
+    }
+
+    /** 保留 [start, end)，与上一段相连时合并。 */
+    private void keep(long start, long end) throws IOException
+    {
+        if (start != runEnd) {
+            flush();
+            runStart = start;
+        }
+        runEnd = end;
+    }
+
+    private void flush() throws IOException
+    {
+        long pos = runStart;
+        while (pos < runEnd) {
+            pos += in.transferTo(pos, runEnd - pos, out);
+        }
+        runStart = runEnd;
+    }
+}
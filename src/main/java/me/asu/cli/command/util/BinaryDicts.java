@@ -0,0 +1,268 @@
+package me.asu.cli.command.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+
+/**
+ * 预编译的二进制字典。
+ * <p>
+ * 文件名为资源名加 {@code .bin}，与文本资源按相同的路径查找，用 {@link FileChannel#map} 加载。
+ * 格式（大端）：
+ * <pre>
+ * int    magic "ASDC"
+ * int    版本
+ * byte   类型：1 行列表，2 键到编码列表
+ * byte   源文件来源：0 无，1 文件，2 类路径
+ * long   源文件大小，无源文件时为 -1
+ * long   源文件修改时间，无源文件时为 -1
+ * string 源文件字符集，空串表示默认
+ * int    条目数
+ * 行列表：     条目数 × string
+ * 键到编码列表：条目数 × (string 键, int 编码数, 编码数 × string)
+ * string = int 字节数 + UTF-8 字节
+ * </pre>
+ * 加载时按 {@link ResourcesFiles#readTextLinesInResources} 的顺序重新查找源文件，
+ * 来源、大小或修改时间任何一项与记录不符都视为过期，回退到解析文本。
+ * 编译时没有源文件、现在却能找到，或者编译时用的文件现在只能从类路径找到，也算过期。
+ * 文件和类路径都找不到源文件时，二进制字典是唯一的数据，照常使用。
+ */
+public class BinaryDicts {
+
+    public static final String SUFFIX  = ".bin";
+    public static final int    MAGIC   = 0x41534443;
+    public static final int    VERSION = 2;
+
+    public static final byte KIND_LINES    = 1;
+    public static final byte KIND_MAP_LIST = 2;
+
+    public static final byte ORIGIN_NONE      = 0;
+    public static final byte ORIGIN_FILE      = 1;
+    public static final byte ORIGIN_CLASSPATH = 2;
+    /** 无法取得大小和修改时间的来源，这样的二进制字典总是视为过期。 */
+    public static final byte ORIGIN_UNKNOWN   = 3;
+
+    /** 源文件的来源、大小和修改时间。 */
+    public static final class Source {
+
+        final byte origin;
+        final long size;
+        final long mtime;
+
+        Source(byte origin, long size, long mtime) {
+            this.origin = origin;
+            this.size = size;
+            this.mtime = mtime;
+        }
+
+        boolean matches(byte origin, long size, long mtime) {
+            return this.origin != ORIGIN_UNKNOWN && this.origin == origin
+                    && this.size == size && this.mtime == mtime;
+        }
+    }
+
+    /**
+     * 按加载文本时的顺序查找源文件：先找文件，再找类路径。
+     * 编译时应在读取文本之前调用，这样读取期间源文件被改动也会被发现。
+     */
+    public static Source source(String name) {
+        File file = ResourcesFiles.locate(name);
+        if (file != null) {
+            return new Source(ORIGIN_FILE, file.length(), file.lastModified());
+        }
+        URL url = BinaryDicts.class.getClassLoader().getResource(name);
+        if (url == null) {
+            return new Source(ORIGIN_NONE, -1, -1);
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                File f = new File(url.toURI());
+                return new Source(ORIGIN_CLASSPATH, f.length(), f.lastModified());
+            }
+            URLConnection conn = url.openConnection();
+            if (conn instanceof JarURLConnection) {
+                JarEntry entry = ((JarURLConnection) conn).getJarEntry();
+                if (entry != null && entry.getSize() >= 0) {
+                    return new Source(ORIGIN_CLASSPATH, entry.getSize(), entry.getTime());
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            // 当作无法校验
+        }
+        return new Source(ORIGIN_UNKNOWN, -1, -1);
+    }
+
+    /**
+     * 加载行列表，没有可用的二进制字典时返回 null。
+     *
+     * @param charset 源文件字符集，null 表示默认
+     */
+    public static List<String> loadLines(String name, String charset) {
+        ByteBuffer buf = open(name, charset, KIND_LINES);
+        if (buf == null) {
+            return null;
+        }
+        try {
+            int count = buf.getInt();
+            List<String> lines = new ArrayList<>(count);
+            byte[] tmp = new byte[256];
+            for (int i = 0; i < count; i++) {
+                tmp = ensure(buf, tmp);
+                lines.add(readString(buf, tmp));
+            }
+            return lines;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 加载键到编码列表的映射，没有可用的二进制字典时返回 null。
+     *
+     * @param charset 源文件字符集，null 表示默认
+     */
+    public static Map<String, List<String>> loadMapList(String name, String charset) {
+        ByteBuffer buf = open(name, charset, KIND_MAP_LIST);
+        if (buf == null) {
+            return null;
+        }
+        try {
+            int count = buf.getInt();
+            Map<String, List<String>> map = new HashMap<>(count * 4 / 3 + 1);
+            byte[] tmp = new byte[256];
+            for (int i = 0; i < count; i++) {
+                tmp = ensure(buf, tmp);
+                String key = readString(buf, tmp);
+                int n = buf.getInt();
+                List<String> values = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) {
+                    tmp = ensure(buf, tmp);
+                    values.add(readString(buf, tmp));
+                }
+                map.put(key, values);
+            }
+            return map;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param source 读取文本之前由 {@link #source(String)} 取得的源文件信息
+     */
+    public static void writeLines(File target, Source source, String charset, List<String> lines)
+            throws IOException {
+        try (DataOutputStream out = create(target, source, charset, KIND_LINES)) {
+            out.writeInt(lines.size());
+            for (String line : lines) {
+                writeString(out, line);
+            }
+        }
+    }
+
+    /**
+     * @param source 读取文本之前由 {@link #source(String)} 取得的源文件信息
+     */
+    public static void writeMapList(File target, Source source, String charset,
+                                    Map<String, List<String>> map) throws IOException {
+        try (DataOutputStream out = create(target, source, charset, KIND_MAP_LIST)) {
+            out.writeInt(map.size());
+            for (Map.Entry<String, List<String>> e : map.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue().size());
+                for (String v : e.getValue()) {
+                    writeString(out, v);
+                }
+            }
+        }
+    }
+
+    private static DataOutputStream create(File target, Source source, String charset, byte kind)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(target.toPath()), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(kind);
+        out.writeByte(source.origin);
+        out.writeLong(source.size);
+        out.writeLong(source.mtime);
+        writeString(out, charset == null ? "" : charset);
+        return out;
+    }
+
+    /** 映射二进制字典并校验文件头，返回位于条目数处的缓冲区。 */
+    private static ByteBuffer open(String name, String charset, byte kind) {
+        File bin = ResourcesFiles.locate(name + SUFFIX);
+        if (bin == null) {
+            return null;
+        }
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(bin.toPath(), StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.get() != kind) {
+                return null;
+            }
+            byte origin = buf.get();
+            long size = buf.getLong();
+            long mtime = buf.getLong();
+            String cs = readString(buf, new byte[ensureLength(buf)]);
+            if (!cs.equalsIgnoreCase(charset == null ? "" : charset)) {
+                return null;
+            }
+            Source source = source(name);
+            // 源文件已经找不到时，二进制字典是唯一的数据，照常使用
+            if (source.origin != ORIGIN_NONE && !source.matches(origin, size, mtime)) {
+                return null;
+            }
+            return buf;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int ensureLength(ByteBuffer buf) {
+        int len = buf.getInt(buf.position());
+        if (len < 0 || len > buf.remaining()) {
+            throw new IllegalArgumentException("bad string length: " + len);
+        }
+        return len;
+    }
+
+    private static byte[] ensure(ByteBuffer buf, byte[] tmp) {
+        int len = ensureLength(buf);
+        return len > tmp.length ? new byte[Math.max(len, tmp.length * 2)] : tmp;
+    }
+
+    private static String readString(ByteBuffer buf, byte[] tmp) {
+        int len = buf.getInt();
+        buf.get(tmp, 0, len);
+        return new String(tmp, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,223 @@
+package me.asu.cli.command.util;
+
+import java.nio.CharBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import me.asu.util.Strings;
+
+/**
+ * 按分隔符取行中的某一列，每次运行编译一次，可在多个线程间共用。
+ * <p>
+ * 结果与 {@code line.trim().split(splitter)[column]} 相同：拆分后末尾的空列被丢弃，
+ * 列号超出范围时取最后一列，小于 0 时取第一列；空行返回空串，分隔符为空时返回整行。
+ * 单个字符、{@code \t} 和 {@code \s+} 不经过正则；扫描到所需列即停止，返回行的视图，不复制字符。
+ */
+public final class ColumnExtractor {
+
+    private static final String REGEX_META = ".$|()[{^?*+\\";
+    private static final String WHITESPACE = "\\s+";
+
+    private final int     column;
+    private final boolean wholeLine;
+    private final boolean whitespace;
+    private final char    delimiter;
+    private final Pattern pattern;
+
+    private ColumnExtractor(int column, boolean wholeLine, boolean whitespace, char delimiter,
+                            Pattern pattern) {
+        this.column = Math.max(0, column);
+        this.wholeLine = wholeLine;
+        this.whitespace = whitespace;
+        this.delimiter = delimiter;
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param splitter 分隔符正则，为空时不拆分
+     * @param column   列号，从 0 开始
+     */
+    public static ColumnExtractor of(String splitter, int column) {
+        if (Strings.isBlank(splitter)) {
+            return new ColumnExtractor(column, true, false, '\0', null);
+        }
+        splitter = splitter.trim();
+        if (WHITESPACE.equals(splitter)) {
+            return new ColumnExtractor(column, false, true, '\0', null);
+        }
+        int literal = literalChar(splitter);
+        if (literal >= 0) {
+            return new ColumnExtractor(column, false, false, (char) literal, null);
+        }
+        return new ColumnExtractor(column, false, false, '\0', Pattern.compile(splitter));
+    }
+
+    /** 与 {@link String#split(String)} 的快速路径相同，另外把 \t 也当作单个字符。 */
+    private static int literalChar(String regex) {
+        if (regex.length() == 1 && REGEX_META.indexOf(regex.charAt(0)) < 0) {
+            return regex.charAt(0);
+        }
+        if (regex.length() == 2 && regex.charAt(0) == '\\') {
+            char c = regex.charAt(1);
+            if (c == 't') {
+                return '\t';
+            }
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'z') && (c < 'A' || c > 'Z')
+                    && !Character.isHighSurrogate(c)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    public CharSequence extract(String line) {
+        if (Strings.isBlank(line)) {
+            return "";
+        }
+        if (wholeLine) {
+            return line;
+        }
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (whitespace) {
+            return extractWhitespace(line, start, end);
+        }
+        if (pattern == null) {
+            return extractChar(line, start, end);
+        }
+        return extractRegex(line, start, end);
+    }
+
+    public String extractString(String line) {
+        return extract(line).toString();
+    }
+
+    /** 去掉首尾空白后不会有空列。 */
+    private CharSequence extractWhitespace(String line, int start, int end) {
+        int fieldStart = start;
+        int field = 0;
+        for (int i = start; i < end; i++) {
+            if (isWhitespace(line.charAt(i))) {
+                if (field == column) {
+                    return view(line, fieldStart, i);
+                }
+                while (i + 1 < end && isWhitespace(line.charAt(i + 1))) {
+                    i++;
+                }
+                fieldStart = i + 1;
+                field++;
+            }
+        }
+        return view(line, fieldStart, end);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private CharSequence extractChar(String line, int start, int end) {
+        Fields fields = new Fields(line);
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == delimiter) {
+                if (fields.add(fieldStart, i)) {
+                    return fields.result();
+                }
+                fieldStart = i + 1;
+            }
+        }
+        fields.add(fieldStart, end);
+        return fields.result();
+    }
+
+    private CharSequence extractRegex(String line, int start, int end) {
+        Fields fields = new Fields(line);
+        Matcher m = pattern.matcher(line);
+        m.region(start, end);
+        int fieldStart = start;
+        boolean matched = false;
+        while (m.find()) {
+            if (m.end() == start && m.start() == start) {
+                // 与 String#split 相同，开头的零宽匹配不产生空列
+                continue;
+            }
+            matched = true;
+            if (fields.add(fieldStart, m.start())) {
+                return fields.result();
+            }
+            fieldStart = m.end();
+        }
+        if (!matched) {
+            return view(line, start, end);
+        }
+        fields.add(fieldStart, end);
+        return fields.result();
+    }
+
+    private static CharSequence view(String line, int start, int end) {
+        if (start == 0 && end == line.length()) {
+            return line;
+        }
+        return CharBuffer.wrap(line, start, end);
+    }
+
+    /**
+     * 逐列累积，处理末尾空列被丢弃的规则。
+     */
+    private final class Fields {
+
+        final String line;
+        int index;
+        /** 最后一个非空列。 */
+        int lastStart = -1;
+        int lastEnd;
+        /** 所需列为空列时，记下它，等到后面出现非空列才确定它不是末尾空列。 */
+        boolean pendingEmpty;
+        int     pendingAt;
+        boolean done;
+        CharSequence result;
+
+        Fields(String line) {
+            this.line = line;
+        }
+
+        /**
+         * @return 已经可以确定结果时返回 true
+         */
+        boolean add(int start, int end) {
+            int i = index++;
+            boolean empty = start == end;
+            if (!empty && pendingEmpty) {
+                result = view(line, pendingAt, pendingAt);
+                done = true;
+                return true;
+            }
+            if (i == column) {
+                if (!empty) {
+                    result = view(line, start, end);
+                    done = true;
+                    return true;
+                }
+                pendingEmpty = true;
+                pendingAt = start;
+            }
+            if (!empty) {
+                lastStart = start;
+                lastEnd = end;
+            }
+            return false;
+        }
+
+        CharSequence result() {
+            if (done) {
+                return result;
+            }
+            return lastStart < 0 ? "" : view(line, lastStart, lastEnd);
+        }
+    }
+}
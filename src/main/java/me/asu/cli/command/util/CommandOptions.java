@@ -0,0 +1,52 @@
+package me.asu.cli.command.util;
+
+import me.asu.tui.framework.util.CliArguments;
+
+/**
+ * 各命令共用的选项解析。
+ */
+public class CommandOptions {
+
+    /** 没有指定 -j 时的线程数。 */
+    public static final int DEFAULT_THREADS = 1;
+
+    /**
+     * 解析 -j 线程数。没有指定时返回 {@link #DEFAULT_THREADS}，不是数字时使用全部处理器，
+     * 结果至少为 1。
+     */
+    public static int getThreads(CliArguments arguments) {
+        int threads = DEFAULT_THREADS;
+        if (arguments.hasParam("j")) {
+            try {
+                threads = Integer.parseInt(arguments.getParam("j"));
+            } catch (NumberFormatException e) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+        }
+        return Math.max(1, threads);
+    }
+
+    /** 没有指定 -m 时的内存预算：最大堆的四分之一。 */
+    public static long defaultMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * 解析 -m 内存预算，单位 MB，返回字节数。没有指定、不是数字或不是正数时使用
+     * {@link #defaultMemoryBudget()}。
+     */
+    public static long getMemoryBudget(CliArguments arguments) {
+        long budget = defaultMemoryBudget();
+        if (arguments.hasParam("m")) {
+            try {
+                long mb = Long.parseLong(arguments.getParam("m"));
+                if (mb > 0) {
+                    budget = Math.min(mb, Long.MAX_VALUE >> 20) << 20;
+                }
+            } catch (NumberFormatException e) {
+                // use default
+            }
+        }
+        return budget;
+    }
+}
@@ -0,0 +1,271 @@
+package me.asu.cli.command.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * 进程内共享的字典缓存，同一个 asu-tui 会话里的各次命令共用已经加载的字典。
+ * <p>
+ * 字典按“命名空间 + 名称”缓存。同一个字典只加载一次，并发请求等待同一个 {@link Future}，
+ * 加载在第一个请求的线程上进行。加载完成后按估算的字节数计入总量，超过上限时按最近最少使用淘汰：
+ * 先淘汰没有命令持有的命名空间，再淘汰其余的；正在加载的字典不会被淘汰。
+ * <p>
+ * 命令在 {@code plug} 时 {@link #retain} 自己的命名空间，{@code unplug} 时 {@link #release}；
+ * 最后一个持有者释放后，该命名空间的字典全部移除。
+ * <p>
+ * 上限默认为最大堆的四分之一，可以用系统属性 {@code asu.dict.cache.mb} 指定。
+ * <p>
+ * 设置了系统属性 {@code asu.dict.preload} 时，命令在 {@code plug} 里调用 {@link #preload}
+ * 在后台线程上预先加载字典，之后的命令只需等待还没加载完的部分。
+ */
+public final class DictionaryRegistry {
+
+    public static final String CAPACITY_PROPERTY = "asu.dict.cache.mb";
+    /**
+     * 要预加载的字典，逗号分隔。每项是命名空间（加载该命名空间的全部默认字典）
+     * 或“命名空间:名称”，{@code all} 表示所有命名空间的默认字典。
+     */
+    public static final String PRELOAD_PROPERTY  = "asu.dict.preload";
+
+    private static final DictionaryRegistry INSTANCE = new DictionaryRegistry(defaultCapacity());
+
+    private final long                     capacity;
+    /** 按访问顺序排列，最久未用的在前。 */
+    private final LinkedHashMap<String, Entry> entries  = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer>         retained = new HashMap<>();
+    private       long                         weight;
+    private       ExecutorService              preloader;
+
+    DictionaryRegistry(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public static DictionaryRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    private static long defaultCapacity() {
+        String mb = System.getProperty(CAPACITY_PROPERTY);
+        if (mb != null) {
+            try {
+                return Long.parseLong(mb.trim()) << 20;
+            } catch (NumberFormatException e) {
+                // use default
+            }
+        }
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * 取字典，没有时用 loader 加载。
+     *
+     * @param weigher 估算加载结果占用的字节数
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String namespace, String name, Callable<T> loader,
+                     ToLongFunction<? super T> weigher) {
+        String key = namespace + ":" + name;
+        Entry entry;
+        FutureTask<Object> task = null;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                task = new FutureTask<>((Callable<Object>) loader);
+                entry = new Entry(namespace, task);
+                entries.put(key, entry);
+            }
+        }
+        if (task != null) {
+            task.run();
+            loaded(key, entry, (ToLongFunction<Object>) weigher);
+        }
+        return (T) await(entry.future);
+    }
+
+    /**
+     * 按 {@code asu.dict.preload} 的配置，在后台线程上依次加载该命名空间的字典，不等待完成。
+     *
+     * @param defaults 只配置了命名空间时加载的字典
+     * @param loader   按名称加载字典，应通过 {@link #get} 取得，结果才会被缓存
+     */
+    public void preload(String namespace, List<String> defaults, Consumer<String> loader) {
+        List<String> names = preloadNames(System.getProperty(PRELOAD_PROPERTY), namespace,
+                defaults);
+        if (names.isEmpty()) {
+            return;
+        }
+        preloader().execute(() -> {
+            for (String name : names) {
+                try {
+                    loader.accept(name);
+                } catch (RuntimeException e) {
+                    // 失败的不缓存，用到时再加载一次
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    static List<String> preloadNames(String config, String namespace, List<String> defaults) {
+        if (config == null) {
+            return new ArrayList<>();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String item : config.split(",")) {
+            item = item.trim();
+            if (item.equals("all") || item.equals("true") || item.equals(namespace)) {
+                names.addAll(defaults);
+            } else if (item.startsWith(namespace + ":")) {
+                names.add(item.substring(namespace.length() + 1));
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    private synchronized ExecutorService preloader() {
+        if (preloader == null) {
+            preloader = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "dict-preload");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return preloader;
+    }
+
+    /** 是否已经加载完成。 */
+    public synchronized boolean isLoaded(String namespace, String name) {
+        Entry entry = entries.get(namespace + ":" + name);
+        return entry != null && entry.loaded;
+    }
+
+    public synchronized void retain(String namespace) {
+        retained.merge(namespace, 1, Integer::sum);
+    }
+
+    /** 最后一个持有者释放时移除该命名空间的全部字典。 */
+    public synchronized void release(String namespace) {
+        Integer count = retained.get(namespace);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            retained.put(namespace, count - 1);
+            return;
+        }
+        retained.remove(namespace);
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            if (e.namespace.equals(namespace) && e.loaded) {
+                weight -= e.weight;
+                it.remove();
+            }
+        }
+    }
+
+    /** 移除所有已加载的字典。 */
+    public synchronized void clear() {
+        entries.values().removeIf(e -> e.loaded);
+        weight = 0;
+    }
+
+    /** 已加载字典的估算总字节数。 */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void loaded(String key, Entry entry, ToLongFunction<Object> weigher) {
+        long w = 0;
+        boolean failed = false;
+        try {
+            w = Math.max(0, weigher.applyAsLong(entry.future.get()));
+        } catch (ExecutionException | InterruptedException | RuntimeException e) {
+            failed = true;
+        }
+        synchronized (this) {
+            if (failed) {
+                // 加载失败不缓存，下次重试
+                entries.remove(key, entry);
+                return;
+            }
+            entry.weight = w;
+            entry.loaded = true;
+            weight += w;
+            evict(entry);
+        }
+    }
+
+    /** 先淘汰没有持有者的命名空间，仍然超出时再淘汰其余的，刚加载的不淘汰。 */
+    private void evict(Entry keep) {
+        for (int pass = 0; pass < 2 && weight > capacity; pass++) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (weight > capacity && it.hasNext()) {
+                Entry e = it.next();
+                if (e == keep || !e.loaded || (pass == 0 && retained.containsKey(e.namespace))) {
+                    continue;
+                }
+                weight -= e.weight;
+                it.remove();
+            }
+        }
+    }
+
+    private static Object await(Future<Object> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final String             namespace;
+        final Future<Object>     future;
+        long                     weight;
+        /** 加载完成且计入了总量。 */
+        boolean                  loaded;
+
+        Entry(String namespace, Future<Object> future) {
+            this.namespace = namespace;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package me.asu.cli.command.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 64 位行指纹（FNV-1a 加 murmur3 的 fmix64 收尾）。
+ * <p>
+ * 字符按一个字节参与计算，所以 ISO-8859-1 解码出来的字符串与原始字节得到相同的指纹。
+ */
+public class Fingerprints {
+
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME  = 0x100000001b3L;
+
+    public static long hash64(CharSequence s) {
+        return hash64(s, 0, s.length());
+    }
+
+    public static long hash64(CharSequence s, int start, int end) {
+        long h = OFFSET;
+        for (int i = start; i < end; i++) {
+            h ^= s.charAt(i);
+            h *= PRIME;
+        }
+        return mix(h);
+    }
+
+    public static long hash64(byte[] b, int start, int end) {
+        long h = OFFSET;
+        for (int i = start; i < end; i++) {
+            h ^= b[i] & 0xFF;
+            h *= PRIME;
+        }
+        return mix(h);
+    }
+
+    /** 按绝对位置计算，不改变缓冲区的 position。 */
+    public static long hash64(ByteBuffer b, int start, int end) {
+        long h = OFFSET;
+        for (int i = start; i < end; i++) {
+            h ^= b.get(i) & 0xFF;
+            h *= PRIME;
+        }
+        return mix(h);
+    }
+
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
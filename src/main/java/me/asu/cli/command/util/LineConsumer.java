@@ -0,0 +1,12 @@
+package me.asu.cli.command.util;
+
+import java.io.IOException;
+
+/**
+ * 逐行接收文本，行不含行分隔符。
+ */
+@FunctionalInterface
+public interface LineConsumer {
+
+    void accept(String line) throws IOException;
+}
@@ -0,0 +1,121 @@
+package me.asu.cli.command.util;
+
+import java.util.Arrays;
+
+/**
+ * long 值的开放寻址集合，不装箱。
+ * <p>
+ * 适合存放已经散列好的指纹：槽位直接取值的低位，不再二次散列。
+ */
+public class LongHashSet {
+
+    /** 槽位数上限，再加倍数组长度就超出 int 范围。 */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private long[]  table;
+    private int     mask;
+    private int     size;
+    private boolean hasZero;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expected) {
+        int cap = 16;
+        while (cap < expected * 2L && cap < MAX_CAPACITY) {
+            cap <<= 1;
+        }
+        table = new long[cap];
+        mask = cap - 1;
+    }
+
+    /**
+     * @return 原来不存在时返回 true
+     */
+    public boolean add(long v) {
+        if (v == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int slot = (int) v & mask;
+        long cur;
+        while ((cur = table[slot]) != 0) {
+            if (cur == v) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = v;
+        size++;
+        if (size * 2L > table.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean contains(long v) {
+        if (v == 0) {
+            return hasZero;
+        }
+        int slot = (int) v & mask;
+        long cur;
+        while ((cur = table[slot]) != 0) {
+            if (cur == v) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** 槽位数已到 {@link #MAX_CAPACITY}，不能再加倍，应改为分区处理。 */
+    public boolean atCapacity() {
+        return table.length >= MAX_CAPACITY;
+    }
+
+    /** 槽位数组占用的字节数。 */
+    public long memoryBytes() {
+        return 8L * table.length;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        hasZero = false;
+    }
+
+    /**
+     * 槽位数加倍。已经到 {@link #MAX_CAPACITY} 时不再加倍，装载率放宽到 3/4，再满就抛出异常，
+     * 调用方应按内存预算分区，不要让一个集合装这么多值。
+     */
+    private void rehash() {
+        if (table.length >= MAX_CAPACITY) {
+            if (size * 4L > table.length * 3L) {
+                throw new IllegalStateException(String.format(
+                        "LongHashSet 已满：%d 个值超出上限，请分区处理。", size));
+            }
+            return;
+        }
+        long[] old = table;
+        table = new long[old.length * 2];
+        mask = table.length - 1;
+        for (long v : old) {
+            if (v != 0) {
+                int slot = (int) v & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = v;
+            }
+        }
+    }
+}
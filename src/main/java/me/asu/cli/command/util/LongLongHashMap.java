@@ -0,0 +1,153 @@
+package me.asu.cli.command.util;
+
+/**
+ * long 到非负 long 的开放寻址映射，不装箱。
+ * <p>
+ * 键应为已经散列好的值，槽位直接取键的低位。
+ */
+public class LongLongHashMap {
+
+    /** 槽位数上限，再加倍数组长度就超出 int 范围。 */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    /** 不存在时的返回值。 */
+    public static final long NO_VALUE = -1;
+
+    private long[]  keys;
+    private long[]  values;
+    private int     mask;
+    private int     size;
+    private boolean hasZero;
+    private long    zeroValue = NO_VALUE;
+
+    public LongLongHashMap() {
+        this(1024);
+    }
+
+    public LongLongHashMap(int expected) {
+        int cap = 16;
+        while (cap < expected * 2L && cap < MAX_CAPACITY) {
+            cap <<= 1;
+        }
+        keys = new long[cap];
+        values = new long[cap];
+        mask = cap - 1;
+    }
+
+    public long get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int slot = (int) key & mask;
+        long cur;
+        while ((cur = keys[slot]) != 0) {
+            if (cur == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    public void put(long key, long value) {
+        if (key == 0) {
+            if (!hasZero) {
+                hasZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = (int) key & mask;
+        long cur;
+        while ((cur = keys[slot]) != 0) {
+            if (cur == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * 2L > keys.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * 键不存在时写入。
+     *
+     * @return 原有的值，原来不存在时返回 {@link #NO_VALUE}
+     */
+    public long putIfAbsent(long key, long value) {
+        if (key == 0) {
+            if (hasZero) {
+                return zeroValue;
+            }
+            hasZero = true;
+            zeroValue = value;
+            size++;
+            return NO_VALUE;
+        }
+        int slot = (int) key & mask;
+        long cur;
+        while ((cur = keys[slot]) != 0) {
+            if (cur == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * 2L > keys.length) {
+            rehash();
+        }
+        return NO_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** 槽位数已到 {@link #MAX_CAPACITY}，不能再加倍，应改为分区处理。 */
+    public boolean atCapacity() {
+        return keys.length >= MAX_CAPACITY;
+    }
+
+    /** 槽位数组占用的字节数。 */
+    public long memoryBytes() {
+        return 16L * keys.length;
+    }
+
+    /**
+     * 槽位数加倍。已经到 {@link #MAX_CAPACITY} 时不再加倍，装载率放宽到 3/4，再满就抛出异常，
+     * 调用方应按内存预算分区，不要让一个映射装这么多键。
+     */
+    private void rehash() {
+        if (keys.length >= MAX_CAPACITY) {
+            if (size * 4L > keys.length * 3L) {
+                throw new IllegalStateException(String.format(
+                        "LongLongHashMap 已满：%d 个键超出上限，请分区处理。", size));
+            }
+            return;
+        }
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k != 0) {
+                int slot = (int) k & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = k;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
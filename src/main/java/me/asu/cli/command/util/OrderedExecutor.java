@@ -0,0 +1,89 @@
+package me.asu.cli.command.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 把任务交给线程池并行执行，按提交顺序把结果交给 {@link Sink}。
+ * <p>
+ * 未取回的任务数有上限，达到上限时 {@link #submit} 先等最早的任务完成并交出结果，
+ * 读入速度不会把内存撑满。结果只在调用 {@link #submit} 和 {@link #finish} 的线程上处理，
+ * {@link Sink} 不需要线程安全。
+ */
+public class OrderedExecutor<T> {
+
+    @FunctionalInterface
+    public interface Sink<T> {
+
+        void accept(T result) throws IOException;
+    }
+
+    private final ExecutorService  pool;
+    private final int              maxInFlight;
+    private final Sink<T>          sink;
+    private final Deque<Future<T>> inFlight = new ArrayDeque<>();
+
+    public OrderedExecutor(ExecutorService pool, int maxInFlight, Sink<T> sink) {
+        this.pool = pool;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.sink = sink;
+    }
+
+    public void submit(Callable<T> task) throws IOException {
+        while (inFlight.size() >= maxInFlight) {
+            drainOne();
+        }
+        inFlight.addLast(pool.submit(task));
+    }
+
+    /** 等所有任务完成并交出结果。 */
+    public void finish() throws IOException {
+        while (!inFlight.isEmpty()) {
+            drainOne();
+        }
+    }
+
+    /** 出错时取消尚未完成的任务。 */
+    public void cancel() {
+        for (Future<T> f : inFlight) {
+            f.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    private void drainOne() throws IOException {
+        Future<T> f = inFlight.removeFirst();
+        T result;
+        try {
+            result = f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        sink.accept(result);
+    }
+}
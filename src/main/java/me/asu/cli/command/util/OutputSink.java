@@ -0,0 +1,159 @@
+package me.asu.cli.command.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 按行写文本文件，各命令的输出都用它。
+ * <p>
+ * 字符先放进暂存区，再用同一个 {@link CharsetEncoder} 编码进直接缓冲区，缓冲区满了才写入
+ * {@link FileChannel}。无法编码的字符替换为编码器的默认替换字节，与 {@link java.io.Writer} 一致。
+ * 用 {@link #append}、{@link #tab()}、{@link #newLine()} 逐段写出一行，不需要先拼接或格式化字符串；
+ * 行分隔符只取一次。不是线程安全的。
+ */
+public class OutputSink implements Appendable, Closeable, Flushable {
+
+    public static final String LINE_SEPARATOR      = System.getProperty("line.separator");
+    public static final int    DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final int CHAR_BUFFER_SIZE = 1 << 13;
+
+    private final FileChannel    channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer     bytes;
+    private final CharBuffer     chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private       long           bytesWritten;
+
+    public OutputSink(Path path, Charset charset) throws IOException {
+        this(path, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    public OutputSink(Path path, Charset charset, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.encoder = charset.newEncoder()
+                              .onMalformedInput(CodingErrorAction.REPLACE)
+                              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public OutputSink append(CharSequence s) throws IOException {
+        return append(s, 0, s.length());
+    }
+
+    @Override
+    public OutputSink append(CharSequence s, int start, int end) throws IOException {
+        int i = start;
+        while (i < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(end - i, chars.remaining());
+            int pos = chars.position();
+            if (s instanceof String) {
+                ((String) s).getChars(i, i + n, chars.array(), pos);
+            } else if (s instanceof StringBuilder) {
+                ((StringBuilder) s).getChars(i, i + n, chars.array(), pos);
+            } else {
+                for (int j = i; j < i + n; j++) {
+                    chars.put(pos + j - i, s.charAt(j));
+                }
+            }
+            chars.position(pos + n);
+            i += n;
+        }
+        return this;
+    }
+
+    /** 写入字符数组的一段。 */
+    public OutputSink write(char[] buf, int off, int len) throws IOException {
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(end - i, chars.remaining());
+            chars.put(buf, i, n);
+            i += n;
+        }
+        return this;
+    }
+
+    @Override
+    public OutputSink append(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+        return this;
+    }
+
+    public OutputSink tab() throws IOException {
+        return append('\t');
+    }
+
+    public OutputSink newLine() throws IOException {
+        return append(LINE_SEPARATOR);
+    }
+
+    public OutputSink writeLine(CharSequence s) throws IOException {
+        return append(s).append(LINE_SEPARATOR);
+    }
+
+    /** 已写入文件的字节数，不含仍在缓冲区中的部分。 */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        encode(false);
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult r = encoder.encode(chars, bytes, endOfInput);
+            if (r.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -43,14 +43,22 @@ public class ResourcesFiles {
     }
 
     public static Map<String, List<String>> loadAsMapList(String name) {
+        Map<String, List<String>> map = BinaryDicts.loadMapList(name, null);
+        if (map != null) {
+            return map;
+        }
         List<String> strings = readLinesInResources(name);
-        Map<String, List<String>> map = toMapList(strings);
+        map = toMapList(strings);
         return map;
     }
 
     public static Map<String, List<String>> loadAsMapList(String name, String encoding) {
+        Map<String, List<String>> map = BinaryDicts.loadMapList(name, encoding);
+        if (map != null) {
+            return map;
+        }
         List<String> strings = readLinesInResources(name, encoding);
-        Map<String, List<String>> map = toMapList(strings);
+        map = toMapList(strings);
         return map;
     }
 
@@ -76,8 +84,12 @@ public class ResourcesFiles {
         return map;
     }
 
-    public static List<String> readLinesInResources(String name) {
-
+    /**
+     * 依次在当前目录、resources 目录、程序目录、程序目录下的 resources 目录查找文件。
+     *
+     * @return 找不到时返回 null
+     */
+    public static File locate(String name) {
         File file = new File(name);
         if (!file.exists()) {
             file = new File("resources", name);
@@ -90,34 +102,33 @@ public class ResourcesFiles {
             String myDIR = OsHelper.getMyDIR();
             file = new File(myDIR, "resources" + File.separator + name);
         }
-        if (!file.exists()) {
-            // try classpath
-            InputStream in = ResourcesFiles.class
-                    .getClassLoader()
-                    .getResourceAsStream(name);
-            if (in == null) {
-                return Collections.emptyList();
-            }
-            return Streams.readLinesAndClose(in);
-        } else {
-            return Files.readLines(file);
+        return file.exists() ? file : null;
+    }
+
+    public static List<String> readLinesInResources(String name) {
+        List<String> lines = BinaryDicts.loadLines(name, null);
+        if (lines != null) {
+            return lines;
         }
+        return readTextLinesInResources(name, null);
     }
 
     public static List<String> readLinesInResources(String name, String charset) {
-        File file = new File(name);
-        if (!file.exists()) {
-            file = new File("resources", name);
-        }
-        if (!file.exists()) {
-            String myDIR = OsHelper.getMyDIR();
-            file = new File(myDIR, name);
-        }
-        if (!file.exists()) {
-            String myDIR = OsHelper.getMyDIR();
-            file = new File(myDIR, "resources" + File.separator + name);
+        List<String> lines = BinaryDicts.loadLines(name, charset);
+        if (lines != null) {
+            return lines;
         }
-        if (!file.exists()) {
+        return readTextLinesInResources(name, charset);
+    }
+
+    /**
+     * 只读取文本资源，不使用二进制字典。
+     *
+     * @param charset 字符集，null 表示默认
+     */
+    public static List<String> readTextLinesInResources(String name, String charset) {
+        File file = locate(name);
+        if (file == null) {
             // try classpath
             InputStream in = ResourcesFiles.class
                     .getClassLoader()
@@ -125,6 +136,9 @@ public class ResourcesFiles {
             if (in == null) {
                 return Collections.emptyList();
             }
+            if (charset == null) {
+                return Streams.readLinesAndClose(in);
+            }
             try {
                 return Streams.readLinesAndClose(new InputStreamReader(in, charset));
             } catch (UnsupportedEncodingException e) {
@@ -132,6 +146,9 @@ public class ResourcesFiles {
                 return Collections.emptyList();
             }
         }
+        if (charset == null) {
+            return Files.readLines(file);
+        }
         return Files.readLines(file, charset);
     }
 }
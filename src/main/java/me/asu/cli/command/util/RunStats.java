@@ -0,0 +1,371 @@
+package me.asu.cli.command.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import me.asu.tui.framework.api.CliConsole;
+import me.asu.tui.framework.util.CliArguments;
+import me.asu.tui.framework.util.CliCmdLineOption;
+
+/**
+ * 一次命令运行的统计：各阶段用时、行数、读写字节数、堆内存峰值和分配量。
+ * <p>
+ * 阶段用 {@link #phase} 计时，同名阶段的用时累加。行数和字节数由命令自己累加，可以在多个线程里调用。
+ * 指定了 {@code -stats <file>} 时另开一个后台线程定期采样各线程的分配字节数，
+ * 结束时在控制台输出汇总并写出 JSON 文件；没有指定时只计时，不采样。
+ * <p>
+ * 分配量依赖 {@code com.sun.management.ThreadMXBean}，不支持时为 -1。
+ * 两次采样之间结束的线程，最后一段的分配量统计不到。
+ * <p>
+ * 用 try-with-resources 创建，提前返回或出错时 {@link #close()} 也会停止采样线程：
+ * <pre>try (RunStats stats = RunStats.start(CMD_NAME, arguments)) { ... stats.report(c); }</pre>
+ * 逐行处理、边处理边写出的命令（如 code、line-filter）写出与处理交错进行，
+ * 写出的用时计入 {@link #PHASE_PROCESS}，不单独记 {@link #PHASE_WRITE}。
+ */
+public class RunStats implements AutoCloseable {
+
+    public static final String PHASE_LOAD    = "load";
+    public static final String PHASE_PARSE   = "parse";
+    public static final String PHASE_PROCESS = "process";
+    public static final String PHASE_WRITE   = "write";
+
+    public static final String OPTION = "stats";
+
+    private static final long SAMPLE_INTERVAL_MS = 100;
+
+    private final String            command;
+    private final long              startNanos;
+    private       long              endNanos;
+    private final Map<String, Long> phases       = new LinkedHashMap<>();
+    private final LongAdder         lines        = new LongAdder();
+    private final LongAdder         bytesRead    = new LongAdder();
+    private final LongAdder         bytesWritten = new LongAdder();
+
+    private final Path                            statsFile;
+    private final com.sun.management.ThreadMXBean threads;
+    /** 各线程上次采样时的分配字节数。 */
+    private final Map<Long, Long>                 lastAllocated = new HashMap<>();
+    private       long                            allocated;
+    private       long                            peakHeap      = -1;
+    private       Thread                          sampler;
+
+    private RunStats(String command, Path statsFile) {
+        this.command = command;
+        this.statsFile = statsFile;
+        this.threads = statsFile == null ? null : allocationBean();
+        if (statsFile != null) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+        if (threads != null) {
+            sample(true);
+            sampler = new Thread(this::sampleLoop, "run-stats-" + command);
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /** 命令的 {@code -stats} 选项，各命令的描述里都加上。 */
+    public static CliCmdLineOption option() {
+        return CliCmdLineOption.builder().shortName(OPTION).hasArg(true)
+                .description("运行统计保存到指定的 JSON 文件").build();
+    }
+
+    /** 开始统计，有 {@code -stats} 参数时采样内存和分配量。 */
+    public static RunStats start(String command, CliArguments arguments) {
+        Path file = null;
+        if (arguments != null && arguments.hasParam(OPTION)) {
+            file = Paths.get(arguments.getParam(OPTION)).toAbsolutePath();
+        }
+        return new RunStats(command, file);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        try {
+            if (!sunBean.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return sunBean;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 开始一个阶段，用 try-with-resources 结束：
+     * <pre>try (RunStats.Phase p = stats.phase(RunStats.PHASE_LOAD)) { ... }</pre>
+     */
+    public Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    public void addLines(long n) {
+        lines.add(n);
+    }
+
+    public void addBytesRead(long n) {
+        bytesRead.add(n);
+    }
+
+    public void addBytesWritten(long n) {
+        bytesWritten.add(n);
+    }
+
+    /** 按文件大小累加读入的字节数，文件不存在时忽略。 */
+    public void addBytesRead(Path file) {
+        addBytesRead(sizeOf(file));
+    }
+
+    public void addBytesWritten(Path file) {
+        addBytesWritten(sizeOf(file));
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return file != null && Files.isRegularFile(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public long getLines() {
+        return lines.sum();
+    }
+
+    /** 停止计时和采样，可以多次调用。 */
+    public synchronized void finish() {
+        if (endNanos != 0) {
+            return;
+        }
+        endNanos = System.nanoTime();
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+        if (threads != null) {
+            sample(false);
+        }
+        if (statsFile != null) {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            peakHeap = peak;
+        }
+    }
+
+    /** 同 {@link #finish()}，没有调用 {@link #report} 就返回时停止采样。 */
+    @Override
+    public void close() {
+        finish();
+    }
+
+    /**
+     * 结束统计。有 {@code -stats} 参数时在控制台输出汇总，并写出 JSON 文件。
+     */
+    public void report(CliConsole c) {
+        finish();
+        if (statsFile == null) {
+            return;
+        }
+        c.printf("%n");
+        for (Map.Entry<String, Long> e : snapshotPhases().entrySet()) {
+            c.printf("阶段 %s： %d ms%n", e.getKey(), TimeUnit.NANOSECONDS.toMillis(e.getValue()));
+        }
+        if (getLines() > 0) {
+            c.printf("总用时： %d ms，%d 行，%.0f 行/秒%n", getElapsedMillis(), getLines(),
+                    getLinesPerSecond());
+        } else {
+            c.printf("总用时： %d ms%n", getElapsedMillis());
+        }
+        c.printf("读入： %d 字节，写出： %d 字节%n", bytesRead.sum(), bytesWritten.sum());
+        if (peakHeap >= 0) {
+            c.printf("堆内存峰值： %d MB%n", peakHeap >> 20);
+        }
+        if (threads != null) {
+            c.printf("分配： %d MB，%.1f MB/秒%n", allocated >> 20,
+                    getAllocationRate() / (1 << 20));
+        }
+        try {
+            Path parent = statsFile.getParent();
+            if (parent != null && !Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+            try (Writer writer = Files.newBufferedWriter(statsFile, StandardCharsets.UTF_8)) {
+                writer.write(toJson());
+                writer.write(System.lineSeparator());
+            }
+            c.printf("统计信息保存到：%s%n", statsFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public long getElapsedMillis() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    public double getLinesPerSecond() {
+        long millis = getElapsedMillis();
+        return millis == 0 ? 0 : getLines() * 1000.0 / millis;
+    }
+
+    /** 每秒读入的字节数，不逐行处理的命令用它衡量吞吐量。 */
+    public double getBytesPerSecond() {
+        long millis = getElapsedMillis();
+        return millis == 0 ? 0 : bytesRead.sum() * 1000.0 / millis;
+    }
+
+    /** 每秒分配的字节数，不支持时为 -1。 */
+    public double getAllocationRate() {
+        if (threads == null) {
+            return -1;
+        }
+        long millis = getElapsedMillis();
+        return millis == 0 ? 0 : allocated * 1000.0 / millis;
+    }
+
+    public String toJson() {
+        StringBuilder b = new StringBuilder(256);
+        b.append('{');
+        b.append("\"command\":");
+        quote(b, command);
+        b.append(",\"startTime\":").append(System.currentTimeMillis() - getElapsedMillis());
+        b.append(",\"elapsedMillis\":").append(getElapsedMillis());
+        b.append(",\"phases\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> e : snapshotPhases().entrySet()) {
+            if (!first) {
+                b.append(',');
+            }
+            first = false;
+            quote(b, e.getKey());
+            b.append(':').append(TimeUnit.NANOSECONDS.toMillis(e.getValue()));
+        }
+        b.append('}');
+        b.append(",\"lines\":").append(getLines());
+        b.append(",\"linesPerSecond\":")
+                .append(String.format(Locale.ROOT, "%.1f", getLinesPerSecond()));
+        b.append(",\"bytesRead\":").append(bytesRead.sum());
+        b.append(",\"bytesWritten\":").append(bytesWritten.sum());
+        b.append(",\"bytesPerSecond\":")
+                .append(String.format(Locale.ROOT, "%.1f", getBytesPerSecond()));
+        b.append(",\"peakHeapBytes\":").append(peakHeap);
+        b.append(",\"allocatedBytes\":").append(threads == null ? -1 : allocated);
+        b.append(",\"allocationRate\":")
+                .append(String.format(Locale.ROOT, "%.1f", getAllocationRate()));
+        b.append('}');
+        return b.toString();
+    }
+
+    private static void quote(StringBuilder b, String s) {
+        b.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+            case '"':
+            case '\\':
+                b.append('\\').append(ch);
+                break;
+            case '\n':
+                b.append("\\n");
+                break;
+            case '\r':
+                b.append("\\r");
+                break;
+            case '\t':
+                b.append("\\t");
+                break;
+            default:
+                if (ch < 0x20) {
+                    b.append(String.format("\\u%04x", (int) ch));
+                } else {
+                    b.append(ch);
+                }
+            }
+        }
+        b.append('"');
+    }
+
+    private synchronized Map<String, Long> snapshotPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    private synchronized void addPhase(String name, long nanos) {
+        phases.merge(name, nanos, Long::sum);
+    }
+
+    private void sampleLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(SAMPLE_INTERVAL_MS);
+                sample(false);
+            }
+        } catch (InterruptedException e) {
+            // finished
+        }
+    }
+
+    /**
+     * 累加各线程自上次采样以来的分配量。
+     *
+     * @param baseline 第一次采样只记录各线程的起点，不计入
+     */
+    private synchronized void sample(boolean baseline) {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] < 0) {
+                continue;
+            }
+            Long last = lastAllocated.put(ids[i], bytes[i]);
+            if (!baseline) {
+                allocated += bytes[i] - (last == null ? 0 : last);
+            }
+        }
+    }
+
+    /** 一个阶段的计时，关闭时计入。 */
+    public class Phase implements AutoCloseable {
+
+        private final String name;
+        private final long   start = System.nanoTime();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            addPhase(name, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package me.asu.cli.command.cnsort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExternalSorterTest {
+
+    /** 行的格式是“分数:序号”，按分数排序，序号用来检查稳定性。 */
+    private static final ToIntFunction<String> SCORER =
+            line -> Integer.parseInt(line.substring(0, line.indexOf(':')));
+
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("external-sorter-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(tempDir);
+    }
+
+    @Test
+    public void sortsInMemory() throws IOException {
+        List<String> input = lines(5000, 50);
+        assertEquals(expected(input), sort(input, null, Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void spillsAndMergesStably() throws IOException {
+        List<String> input = lines(20000, 50);
+        assertEquals(expected(input), sort(input, null, 4096, 2));
+    }
+
+    @Test
+    public void spillsAndMergesStablyInParallel() throws IOException {
+        List<String> input = lines(20000, 50);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected(input), sort(input, pool, 4096, 2));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void deletesRunsOnClose() throws IOException {
+        List<String> input = lines(2000, 10);
+        sort(input, null, 1024, 2);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * @param minRuns 至少应写出的临时分段数
+     */
+    private List<String> sort(List<String> input, ForkJoinPool pool, long memoryBudget,
+                              int minRuns) throws IOException {
+        StringWriter output = new StringWriter();
+        try (ExternalSorter sorter = new ExternalSorter(SCORER, pool, memoryBudget, tempDir)) {
+            for (String line : input) {
+                sorter.add(line);
+            }
+            assertEquals(input.size(), sorter.size());
+            sorter.writeTo(output, "\n");
+            assertTrue("runs: " + sorter.getRunCount(), sorter.getRunCount() >= minRuns);
+        }
+        return split(output.toString());
+    }
+
+    private static List<String> lines(int count, int scores) {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(random.nextInt(scores) + ":" + i);
+        }
+        return lines;
+    }
+
+    /** List#sort 是稳定的。 */
+    private static List<String> expected(List<String> input) {
+        List<String> sorted = new ArrayList<>(input);
+        sorted.sort(Comparator.comparingInt(SCORER));
+        return sorted;
+    }
+
+    private static List<String> split(String text) {
+        return text.isEmpty() ? new ArrayList<>() : Arrays.asList(text.split("\n"));
+    }
+}
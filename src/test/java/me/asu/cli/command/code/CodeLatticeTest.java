@@ -0,0 +1,209 @@
+package me.asu.cli.command.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * 深度优先枚举应与逐层递归给出相同的编码和顺序；按概率排序应给出同一组编码，代价不递减。
+ */
+public class CodeLatticeTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void smallDictionary() {
+        Map<String, List<String>> dict = sample();
+        check(dict, "中国人", 13);
+        check(dict, "中国", 8);
+        check(dict, "美国", 0);
+        check(dict, "", 0);
+    }
+
+    @Test
+    public void randomDictionaries() {
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            Map<String, List<String>> dict = randomDictionary(random);
+            for (int i = 0; i < 20; i++) {
+                check(dict, randomWord(random, 1 + random.nextInt(8)), -1);
+            }
+        }
+    }
+
+    @Test
+    public void limitKeepsCheapest() {
+        Map<String, List<String>> dict = sample();
+        String phrase = "中国人";
+        List<Double> all = costs(lattice(dict).setRanked(true), dict, phrase, false, 0);
+        CodeLattice lattice = lattice(dict).setRanked(true);
+        List<Double> top = costs(lattice, dict, phrase, false, 3);
+        assertEquals(all.subList(0, 3), top);
+        assertTrue(lattice.isTruncated());
+        assertFalse(lattice.isTimedOut());
+        assertFalse(lattice.isFrontierFull());
+
+        // 上限恰好等于编码个数时没有截掉
+        for (boolean ranked : new boolean[] {false, true}) {
+            CodeLattice exact = lattice(dict).setRanked(ranked);
+            assertEquals(all.size(), costs(exact, dict, phrase, false, all.size()).size());
+            assertFalse(exact.isTruncated());
+            CodeLattice fewer = lattice(dict).setRanked(ranked);
+            costs(fewer, dict, phrase, false, all.size() - 1);
+            assertTrue(fewer.isTruncated());
+        }
+    }
+
+    /**
+     * @param expected 编码个数，-1 表示不检查
+     */
+    private static void check(Map<String, List<String>> dict, String phrase, int expected) {
+        List<String> all = collect(lattice(dict), phrase, false);
+        assertEquals(phrase, recurse(dict, phrase), all);
+        if (expected >= 0) {
+            assertEquals(phrase, expected, all.size());
+        }
+
+        // 只枚举最短编码时，顺序与全部枚举中总码长最短的那些相同
+        CodeLattice lattice = lattice(dict);
+        List<String> shortest = collect(lattice, phrase, true);
+        List<String> expectedShortest = new ArrayList<>();
+        for (String coding : all) {
+            if (codeLength(coding) == lattice.getMinLength()) {
+                expectedShortest.add(coding);
+            }
+        }
+        assertEquals(phrase, expectedShortest, shortest);
+
+        for (boolean onlyShortest : new boolean[] {false, true}) {
+            List<String> dfs = onlyShortest ? shortest : all;
+            CodeLattice ranked = lattice(dict).setRanked(true);
+            List<String> best = collect(ranked, phrase, onlyShortest);
+            assertFalse(ranked.isTimedOut());
+            assertFalse(ranked.isFrontierFull());
+            assertEquals(phrase, dfs.size(), best.size());
+            assertEquals(phrase, new HashSet<>(dfs), new HashSet<>(best));
+
+            List<Double> costs = costs(lattice(dict).setRanked(true), dict, phrase,
+                    onlyShortest, 0);
+            for (int i = 1; i < costs.size(); i++) {
+                assertTrue(phrase, costs.get(i) >= costs.get(i - 1) - EPSILON);
+            }
+        }
+    }
+
+    private static CodeLattice lattice(Map<String, List<String>> dict) {
+        return new CodeLattice(new CodeTrie(dict));
+    }
+
+    /** 每种编码记为“词/编码 词/编码 …”，同一组编码的不同切分也能区分。 */
+    private static List<String> collect(CodeLattice lattice, String phrase, boolean shortest) {
+        List<String> result = new ArrayList<>();
+        lattice.reset(phrase, shortest, 0);
+        while (lattice.next()) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < lattice.getWordCount(); i++) {
+                sb.append(lattice.getWord(i)).append('/').append(lattice.getCode(i)).append(' ');
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /** 原来的逐层递归：先按词的结尾从近到远，再按编码在字典中的顺序。 */
+    private static List<String> recurse(Map<String, List<String>> dict, String phrase) {
+        List<String> result = new ArrayList<>();
+        if (!phrase.isEmpty()) {
+            recurse(dict, phrase, 0, "", result);
+        }
+        return result;
+    }
+
+    private static void recurse(Map<String, List<String>> dict, String phrase, int start,
+                                String prefix, List<String> result) {
+        for (int end = start + 1; end <= phrase.length(); end++) {
+            String word = phrase.substring(start, end);
+            List<String> codes = dict.get(word);
+            if (codes == null) {
+                continue;
+            }
+            for (String code : codes) {
+                String coding = prefix + word + '/' + code + ' ';
+                if (end == phrase.length()) {
+                    result.add(coding);
+                } else {
+                    recurse(dict, phrase, end, coding, result);
+                }
+            }
+        }
+    }
+
+    private static int codeLength(String coding) {
+        int length = 0;
+        for (String part : coding.split(" ")) {
+            length += part.length() - part.indexOf('/') - 1;
+        }
+        return length;
+    }
+
+    /** 编码在字典中的序号 r 的代价为 ln(1 + r)。 */
+    private static List<Double> costs(CodeLattice lattice, Map<String, List<String>> dict,
+                                      String phrase, boolean shortest, int limit) {
+        List<Double> costs = new ArrayList<>();
+        lattice.reset(phrase, shortest, limit);
+        while (lattice.next()) {
+            double cost = 0;
+            for (int i = 0; i < lattice.getWordCount(); i++) {
+                cost += Math.log1p(dict.get(lattice.getWord(i)).indexOf(lattice.getCode(i)));
+            }
+            costs.add(cost);
+        }
+        return costs;
+    }
+
+    private static Map<String, List<String>> sample() {
+        Map<String, List<String>> dict = new HashMap<>();
+        dict.put("中", Arrays.asList("a", "b"));
+        dict.put("国", Arrays.asList("c", "d", "e"));
+        dict.put("中国", Arrays.asList("f", "g"));
+        dict.put("人", Arrays.asList("h"));
+        dict.put("国人", Arrays.asList("i", "j"));
+        dict.put("中国人", Arrays.asList("k"));
+        return dict;
+    }
+
+    /** 由 a、b、c 组成的词，同一个词的编码互不相同、长度不一。 */
+    private static Map<String, List<String>> randomDictionary(Random random) {
+        Map<String, List<String>> dict = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            String word = randomWord(random, 1 + random.nextInt(3));
+            List<String> codes = new ArrayList<>();
+            int n = 1 + random.nextInt(4);
+            for (int j = 0; j < n; j++) {
+                codes.add(randomWord(random, 1 + random.nextInt(4)) + j);
+            }
+            dict.put(word, codes);
+        }
+        for (char c = 'a'; c <= 'c'; c++) {
+            dict.putIfAbsent(String.valueOf(c), Arrays.asList(c + "0", c + "1"));
+        }
+        return dict;
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package me.asu.cli.command.line_filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BaseIndexTest
+{
+
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempDir = Files.createTempDirectory("base-index-test");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(tempDir);
+    }
+
+    @Test
+    public void roundTrip() throws IOException
+    {
+        List<String> lines = lines(50000);
+        Path source = write("base.txt", lines, StandardCharsets.UTF_8);
+        Path target = tempDir.resolve("base.txt" + BaseIndex.SUFFIX);
+        BaseIndex.write(source, StandardCharsets.UTF_8, target);
+        try (BaseIndex index = BaseIndex.open(target, false)) {
+            assertEquals(lines.size(), index.size());
+            for (String line : lines) {
+                assertTrue(line, index.contains(line));
+            }
+            assertFalse(index.contains("missing"));
+            assertFalse(index.contains("key"));
+            assertFalse(index.contains("key50000"));
+            assertFalse(index.contains("键1x"));
+        }
+    }
+
+    @Test
+    public void reusesIndexUntilSourceChanges() throws IOException
+    {
+        Path source = write("base.txt", lines(1000), StandardCharsets.UTF_8);
+        try (BaseIndex index = BaseIndex.load(source, StandardCharsets.UTF_8)) {
+            assertFalse(index.isReused());
+        }
+        try (BaseIndex index = BaseIndex.load(source, StandardCharsets.UTF_8)) {
+            assertTrue(index.isReused());
+            assertTrue(index.contains("key1"));
+        }
+
+        List<String> changed = new ArrayList<>();
+        changed.add("changed");
+        write("base.txt", changed, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(
+                Files.getLastModifiedTime(source).toMillis() + 2000));
+        try (BaseIndex index = BaseIndex.load(source, StandardCharsets.UTF_8)) {
+            assertFalse(index.isReused());
+            assertEquals(1, index.size());
+            assertTrue(index.contains("changed"));
+            assertFalse(index.contains("key1"));
+        }
+    }
+
+    @Test
+    public void rebuildsForOtherCharset() throws IOException
+    {
+        List<String> lines = lines(100);
+        Charset gbk = Charset.forName("GBK");
+        Path source = write("base.txt", lines, gbk);
+        try (BaseIndex index = BaseIndex.load(source, StandardCharsets.UTF_8)) {
+            assertFalse(index.isReused());
+        }
+        try (BaseIndex index = BaseIndex.load(source, gbk)) {
+            assertFalse(index.isReused());
+            assertTrue(index.contains("键2"));
+        }
+    }
+
+    @Test
+    public void rebuildsCorruptIndex() throws IOException
+    {
+        Path source = write("base.txt", lines(100), StandardCharsets.UTF_8);
+        Files.write(source.resolveSibling("base.txt" + BaseIndex.SUFFIX), new byte[] {1, 2, 3});
+        try (BaseIndex index = BaseIndex.load(source, StandardCharsets.UTF_8)) {
+            assertFalse(index.isReused());
+            assertEquals(100, index.size());
+        }
+    }
+
+    /** 带重复的行，含空行和中文。 */
+    private static List<String> lines(int count)
+    {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 1000 == 0) {
+                lines.add("");
+            } else if (i % 7 == 0) {
+                lines.add("key" + (i / 7));
+            } else {
+                lines.add((i % 2 == 0 ? "键" : "key") + i);
+            }
+        }
+        return lines;
+    }
+
+    private Path write(String name, List<String> lines, Charset charset) throws IOException
+    {
+        return Files.write(tempDir.resolve(name), lines, charset);
+    }
+}
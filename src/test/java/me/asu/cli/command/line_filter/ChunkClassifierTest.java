@@ -0,0 +1,44 @@
+package me.asu.cli.command.line_filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class ChunkClassifierTest
+{
+
+    @Test
+    public void lastLineBreak()
+    {
+        assertEquals(-1, lastLineBreak(""));
+        assertEquals(-1, lastLineBreak("abc"));
+        assertEquals(2, lastLineBreak("ab\ncd"));
+        assertEquals(5, lastLineBreak("ab\ncd\n"));
+        assertEquals(1, lastLineBreak("a\rb"));
+        assertEquals(2, lastLineBreak("a\r\nb"));
+    }
+
+    /** 末尾的 \r 可能与下一块开头的 \n 组成 \r\n，不能在这里切。 */
+    @Test
+    public void lastLineBreakSkipsTrailingCarriageReturn()
+    {
+        assertEquals(-1, lastLineBreak("abc\r"));
+        assertEquals(1, lastLineBreak("a\nb\r"));
+        assertEquals(1, lastLineBreak("a\rb\r"));
+    }
+
+    @Test
+    public void lastLineBreakIgnoresBytesPastLength()
+    {
+        byte[] buf = "ab\ncd\nef".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(2, ChunkClassifier.lastLineBreak(buf, 5));
+        assertEquals(-1, ChunkClassifier.lastLineBreak(buf, 2));
+    }
+
+    private static int lastLineBreak(String s)
+    {
+        byte[] buf = s.getBytes(StandardCharsets.US_ASCII);
+        return ChunkClassifier.lastLineBreak(buf, buf.length);
+    }
+}
@@ -0,0 +1,171 @@
+package me.asu.cli.command.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.asu.cli.command.util.LineConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 流水线的输出应与逐个阶段依次处理整个输入相同。
+ */
+public class PipelineTest {
+
+    private Path input;
+
+    @Before
+    public void setUp() throws IOException {
+        input = Files.createTempFile("pipeline-test", ".txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    @Test
+    public void matchesSequentialStages() throws IOException {
+        // 超过队列能缓存的行数，上游会在 put 上等待
+        int count = Pipeline.BATCH_SIZE * Pipeline.QUEUE_CAPACITY * 4 + 7;
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add("line" + (i * 7919 % 5000));
+        }
+        Files.write(input, lines, StandardCharsets.UTF_8);
+
+        List<String> expected = lines;
+        for (LineStage stage : stages()) {
+            expected = runSequentially(stage, expected);
+        }
+
+        Pipeline pipeline = new Pipeline(null);
+        int i = 0;
+        for (LineStage stage : stages()) {
+            pipeline.add("stage" + i++, stage);
+        }
+        List<String> output = new ArrayList<>();
+        assertEquals(count, pipeline.run(input, StandardCharsets.UTF_8, output::add));
+        assertEquals(expected, output);
+    }
+
+    @Test
+    public void failingStageClosesAllStages() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            lines.add("line" + i);
+        }
+        Files.write(input, lines, StandardCharsets.UTF_8);
+
+        AtomicInteger closed = new AtomicInteger();
+        Pipeline pipeline = new Pipeline(null);
+        pipeline.add("pass", new Counting(closed));
+        pipeline.add("fail", new Counting(closed) {
+            @Override
+            public void accept(String line, LineConsumer out) throws IOException {
+                if (line.equals("line5000")) {
+                    throw new IOException("boom");
+                }
+                out.accept(line);
+            }
+        });
+        pipeline.add("pass", new Counting(closed));
+        try {
+            pipeline.run(input, StandardCharsets.UTF_8, line -> { });
+            fail();
+        } catch (IOException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals(3, closed.get());
+    }
+
+    @Test
+    public void closeReleasesStagesThatNeverRan() throws IOException {
+        AtomicInteger closed = new AtomicInteger();
+        Pipeline pipeline = new Pipeline(null);
+        pipeline.add("a", new Counting(closed)).add("b", new Counting(closed));
+        pipeline.close();
+        assertEquals(2, closed.get());
+        try {
+            pipeline.run(input, StandardCharsets.UTF_8, line -> { });
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("只能运行一次"));
+        }
+    }
+
+    /** 转大写、去重、排序：逐行输出、过滤和看到全部输入才输出的阶段各一个。 */
+    private static List<LineStage> stages() {
+        List<LineStage> stages = new ArrayList<>();
+        stages.add((line, out) -> out.accept(line.toUpperCase()));
+        stages.add(new LineStage() {
+            private final Set<String> seen = new HashSet<>();
+
+            @Override
+            public void accept(String line, LineConsumer out) throws IOException {
+                if (seen.add(line)) {
+                    out.accept(line);
+                }
+            }
+        });
+        stages.add(new LineStage() {
+            private final List<String> buffer = new ArrayList<>();
+
+            @Override
+            public void accept(String line, LineConsumer out) {
+                buffer.add(line);
+            }
+
+            @Override
+            public void finish(LineConsumer out) throws IOException {
+                Collections.sort(buffer);
+                for (String line : buffer) {
+                    out.accept(line);
+                }
+            }
+        });
+        return stages;
+    }
+
+    private static List<String> runSequentially(LineStage stage, List<String> lines)
+            throws IOException {
+        List<String> output = new ArrayList<>();
+        for (String line : lines) {
+            stage.accept(line, output::add);
+        }
+        stage.finish(output::add);
+        stage.close();
+        return output;
+    }
+
+    private static class Counting implements LineStage {
+
+        private final AtomicInteger closed;
+
+        Counting(AtomicInteger closed) {
+            this.closed = closed;
+        }
+
+        @Override
+        public void accept(String line, LineConsumer out) throws IOException {
+            out.accept(line);
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+}
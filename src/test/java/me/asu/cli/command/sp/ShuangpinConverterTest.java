@@ -0,0 +1,61 @@
+package me.asu.cli.command.sp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class ShuangpinConverterTest {
+
+    private static final String[] LINES = {
+            "中国 zhong guo", "你好  ni   hao  ", "  zhong guo", "双拼\tshuang\tpin",
+            "错误 zhong xx", "大写 Zhong", "单", "绿 lü", "略 lve", "安 an", "儿 er",
+            "创 chuang",
+    };
+
+    @Test
+    public void matchesSplit() {
+        Map<String, String> table = FullPyToSpCmd.makeTable();
+        ShuangpinConverter converter = new ShuangpinConverter(new ShuangpinTable(table), "\n");
+        for (String line : LINES) {
+            String expected = split(table, line);
+            boolean converted = converter.convert(line);
+            assertEquals(line, expected != null, converted);
+            if (converted) {
+                assertEquals(line, expected,
+                        new String(converter.getBuffer(), 0, converter.length()));
+            }
+        }
+    }
+
+    @Test
+    public void reusesBuffer() {
+        ShuangpinConverter converter = new ShuangpinConverter(ShuangpinTable.HE, "");
+        StringBuilder line = new StringBuilder("长");
+        StringBuilder expected = new StringBuilder("长\t");
+        for (int i = 0; i < 200; i++) {
+            line.append(" zhong");
+            expected.append(i == 0 ? "" : " ").append("vs");
+        }
+        converter.convert(line.toString());
+        assertEquals(expected.toString(),
+                new String(converter.getBuffer(), 0, converter.length()));
+        converter.convert("短 ni");
+        assertEquals("短\tni", new String(converter.getBuffer(), 0, converter.length()));
+    }
+
+    /** 原来按 split 逐个查表的转换，有音节查不到时返回 null。空行和注释行在调用之前跳过。 */
+    private static String split(Map<String, String> table, String line) {
+        String[] split = line.split("\\s+");
+        List<String> mapping = new ArrayList<>();
+        for (int i = 1; i < split.length; i++) {
+            if (!table.containsKey(split[i])) {
+                return null;
+            }
+            mapping.add(table.get(split[i]));
+        }
+        return split[0] + "\t" + String.join(" ", mapping) + "\n";
+    }
+}
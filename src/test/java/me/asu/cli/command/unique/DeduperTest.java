@@ -0,0 +1,227 @@
+package me.asu.cli.command.unique;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 各种去重方式的结果都应与用 {@link LinkedHashSet} 保留首次出现的行相同。
+ */
+public class DeduperTest
+{
+
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempDir = Files.createTempDirectory("deduper-test");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(tempDir);
+    }
+
+    @Test
+    public void fingerprintInMemory() throws IOException
+    {
+        List<String> input = lines(20000, 3000, 1);
+        Path in = write("in.txt", input);
+        Path out = tempDir.resolve("out.txt");
+        FingerprintDeduper deduper = new FingerprintDeduper(Long.MAX_VALUE, false);
+        deduper.dedup(in, out, "\n");
+        assertEquals(0, deduper.getPartitions());
+        assertEquals(join(new LinkedHashSet<>(input)), read(out));
+    }
+
+    @Test
+    public void fingerprintPartitioned() throws IOException
+    {
+        List<String> input = lines(20000, 3000, 2);
+        Path in = write("in.txt", input);
+        Path out = tempDir.resolve("out.txt");
+        FingerprintDeduper deduper = new FingerprintDeduper(4096, false);
+        deduper.dedup(in, out, "\n");
+        assertTrue(deduper.getPartitions() > 0);
+        assertEquals(join(new LinkedHashSet<>(input)), read(out));
+    }
+
+    @Test
+    public void fingerprintVerified() throws IOException
+    {
+        List<String> input = lines(20000, 3000, 3);
+        Path in = write("in.txt", input);
+        Path out = tempDir.resolve("out.txt");
+        FingerprintDeduper deduper = new FingerprintDeduper(Long.MAX_VALUE, true);
+        deduper.dedup(in, out, "\n");
+        assertEquals(0, deduper.getCollisions());
+        assertEquals(join(new LinkedHashSet<>(input)), read(out));
+    }
+
+    /** 行比估算的短，按文件大小分出的分区装不进预算，要再分开。 */
+    @Test
+    public void fingerprintResplit() throws IOException
+    {
+        List<String> input = lines(100000, 50000, 6);
+        Path in = write("in.txt", input);
+        for (boolean verify : new boolean[] {false, true}) {
+            Path out = tempDir.resolve("out.txt");
+            FingerprintDeduper deduper = new FingerprintDeduper(1024, verify);
+            deduper.dedup(in, out, "\n");
+            assertTrue(deduper.getPartitions() > 1 << 10);
+            assertEquals(join(new LinkedHashSet<>(input)), read(out));
+        }
+    }
+
+    /** 指纹全都相同的分区再分也分不开，照常处理。 */
+    @Test
+    public void fingerprintSameLines() throws IOException
+    {
+        List<String> input = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            input.add("same");
+        }
+        Path in = write("in.txt", input);
+        for (boolean verify : new boolean[] {false, true}) {
+            Path out = tempDir.resolve("out.txt");
+            new FingerprintDeduper(1024, verify).dedup(in, out, "\n");
+            assertEquals("same\n", read(out));
+        }
+    }
+
+    @Test
+    public void mapped() throws IOException
+    {
+        List<String> input = lines(20000, 3000, 4);
+        Path in = write("in.txt", input);
+        Path out = tempDir.resolve("out.txt");
+        MappedDeduper deduper = new MappedDeduper(Long.MAX_VALUE);
+        assertTrue(deduper.dedup(in, out));
+        assertEquals(join(new LinkedHashSet<>(input)), read(out));
+    }
+
+    @Test
+    public void mappedKeepsLineEndings() throws IOException
+    {
+        Path in = tempDir.resolve("in.txt");
+        Files.write(in, "a\r\nb\nb\ra\nc\r\nc".getBytes(StandardCharsets.UTF_8));
+        Path out = tempDir.resolve("out.txt");
+        assertTrue(new MappedDeduper(Long.MAX_VALUE).dedup(in, out));
+        assertEquals("a\r\nb\nc\r\n", read(out));
+    }
+
+    /** -z 超出内存预算时改用分区校验，输出应与按字节去重相同。 */
+    @Test
+    public void fallbackKeepsLineEndings() throws IOException
+    {
+        assertSameAsMapped("a\r\nb\nb\ra\nc\r\nc");
+        assertSameAsMapped("x\ry\rx\r");
+        assertSameAsMapped("x\n\r\n\ry");
+        assertSameAsMapped("");
+
+        String[] endings = {"\n", "\r", "\r\n"};
+        Random random = new Random(5);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("line").append(random.nextInt(3000))
+                    .append(endings[random.nextInt(endings.length)]);
+        }
+        assertSameAsMapped(sb.toString());
+    }
+
+    private void assertSameAsMapped(String input) throws IOException
+    {
+        Path in = tempDir.resolve("in.txt");
+        Files.write(in, input.getBytes(StandardCharsets.UTF_8));
+        Path expected = tempDir.resolve("expected.txt");
+        assertTrue(new MappedDeduper(Long.MAX_VALUE).dedup(in, expected));
+        Path out = tempDir.resolve("out.txt");
+        new FingerprintDeduper(4096, true).dedup(in, out, null);
+        assertEquals(read(expected), read(out));
+    }
+
+    @Test
+    public void global() throws IOException
+    {
+        List<List<String>> inputs = new ArrayList<>();
+        Path[] files = new Path[3];
+        for (int i = 0; i < files.length; i++) {
+            inputs.add(lines(5000, 2000, 10 + i));
+            files[i] = write("in" + i + ".txt", inputs.get(i));
+        }
+        GlobalDeduper deduper = new GlobalDeduper();
+        // 登记顺序不影响结果
+        for (int i = files.length - 1; i >= 0; i--) {
+            deduper.collect(i, files[i]);
+        }
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < files.length; i++) {
+            Path out = tempDir.resolve("out" + i + ".txt");
+            long removed = deduper.write(i, files[i], out, "\n");
+            List<String> kept = new ArrayList<>();
+            for (String line : inputs.get(i)) {
+                if (seen.add(line)) {
+                    kept.add(line);
+                }
+            }
+            assertEquals(inputs.get(i).size() - kept.size(), removed);
+            assertEquals(join(kept), read(out));
+        }
+        assertEquals(seen.size(), deduper.size());
+    }
+
+    /** 带重复的行，含空行和中文。 */
+    private static List<String> lines(int count, int distinct, long seed)
+    {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int n = random.nextInt(distinct);
+            lines.add(n == 0 ? "" : (n % 3 == 0 ? "词组" : "line") + n);
+        }
+        return lines;
+    }
+
+    private Path write(String name, List<String> lines) throws IOException
+    {
+        Path path = tempDir.resolve(name);
+        Files.write(path, join(lines).getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    private static String join(Collection<String> lines)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String read(Path path) throws IOException
+    {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
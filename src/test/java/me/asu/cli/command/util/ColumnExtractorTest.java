@@ -0,0 +1,58 @@
+package me.asu.cli.command.util;
+
+import static org.junit.Assert.assertEquals;
+
+import me.asu.util.Strings;
+import org.junit.Test;
+
+public class ColumnExtractorTest {
+
+    private static final String[] LINES = {
+            "a,b,c", " a , b ", "a,,b", ",a", "a,b,,", ",,,", "", "   ", "x\ty  z",
+            "\tx\t\ty\t", "中文,测试", "a;b,c", "a b\tc", "a|b||c", "abc", "a,,", ",,b",
+    };
+
+    private static final String[] SPLITTERS = {
+            null, "", " ", ",", "\t", "\\t", "\\s+", " \\s+ ", ";", "\\|", "[,;]", ",+", ",|;",
+    };
+
+    private static final int[] COLUMNS = {-1, 0, 1, 2, 3, 10};
+
+    @Test
+    public void matchesSplit() {
+        for (String splitter : SPLITTERS) {
+            for (int column : COLUMNS) {
+                ColumnExtractor extractor = ColumnExtractor.of(splitter, column);
+                for (String line : LINES) {
+                    String message = "line=[" + line + "] splitter=[" + splitter
+                            + "] column=" + column;
+                    assertEquals(message, split(line, column, splitter),
+                            extractor.extractString(line));
+                }
+            }
+        }
+    }
+
+    /** line-filter 原来的取列方式；拆分结果为空时原来会抛出异常，这里按空串处理。 */
+    private static String split(String w, int columnIndex, String splitter) {
+        if (Strings.isBlank(w)) {
+            return "";
+        }
+        if (Strings.isBlank(splitter)) {
+            return w;
+        }
+        splitter = splitter.trim();
+        w = w.trim();
+        String[] split = w.split(splitter);
+        if (split.length == 0) {
+            return "";
+        }
+        if (columnIndex >= split.length) {
+            columnIndex = split.length - 1;
+        }
+        if (columnIndex < 0) {
+            columnIndex = 0;
+        }
+        return split[columnIndex];
+    }
+}
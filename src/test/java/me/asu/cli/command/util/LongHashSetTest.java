@@ -0,0 +1,64 @@
+package me.asu.cli.command.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+    @Test
+    public void matchesHashSet() {
+        Random random = new Random(7);
+        LongHashSet set = new LongHashSet(16);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200000; i++) {
+            // 取值范围小，保证有重复；低位相同的值考验线性探测
+            long v = random.nextBoolean() ? random.nextInt(50000) : (long) random.nextInt(1000) << 40;
+            assertEquals(expected.add(v), set.add(v));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long v = -10; v < 60000; v++) {
+            assertEquals(expected.contains(v), set.contains(v));
+        }
+        for (long v : expected) {
+            assertTrue(set.contains(v));
+        }
+    }
+
+    @Test
+    public void zeroAndNegativeValues() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(-1));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertTrue(set.add(Long.MAX_VALUE));
+        assertEquals(4, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(-1));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertTrue(set.contains(Long.MAX_VALUE));
+        assertFalse(set.contains(1));
+    }
+
+    @Test
+    public void growsAndClears() {
+        LongHashSet set = new LongHashSet(16);
+        long before = set.memoryBytes();
+        for (long v = 1; v <= 10000; v++) {
+            set.add(v);
+        }
+        assertTrue(set.memoryBytes() > before);
+        assertFalse(set.atCapacity());
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(1));
+        assertTrue(set.add(1));
+    }
+}